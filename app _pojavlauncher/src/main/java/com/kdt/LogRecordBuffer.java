@@ -0,0 +1,80 @@
+package com.kdt;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded buffer of log records, written by any amount of threads and read by a single consumer.
+ * Writers never lock nor wait for the consumer: once the buffer is full, the oldest records
+ * are overwritten, and the consumer skips them.
+ */
+public class LogRecordBuffer {
+    private static final long SLOT_BEING_WRITTEN = -1;
+
+    private final int mCapacity;
+    private final int mMask;
+    private final AtomicReferenceArray<String> mRecords;
+    /* The sequence number of the record in each slot, used to detect unpublished and overwritten records */
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mWriteSequence = new AtomicLong();
+    private long mReadSequence = 0;
+
+    /**
+     * @param capacity the maximum amount of records kept in the buffer, rounded up to a power of two
+     */
+    public LogRecordBuffer(int capacity) {
+        mCapacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mMask = mCapacity - 1;
+        mRecords = new AtomicReferenceArray<>(mCapacity);
+        mSequences = new AtomicLongArray(mCapacity);
+        for(int i = 0; i < mCapacity; i++) mSequences.set(i, SLOT_BEING_WRITTEN);
+    }
+
+    /**
+     * Add a record to the buffer. Can be called from any thread.
+     * @param record the record to add
+     */
+    public void add(String record) {
+        long sequence = mWriteSequence.getAndIncrement();
+        int slot = (int) (sequence & mMask);
+        mSequences.set(slot, SLOT_BEING_WRITTEN);
+        mRecords.set(slot, record);
+        mSequences.set(slot, sequence);
+    }
+
+    /**
+     * Move all published records into a list, oldest first. Must only be called from the consumer thread.
+     * @param destination the list to add the records to
+     * @return the amount of records that were overwritten before they could be read
+     */
+    public int drainTo(List<String> destination) {
+        long writeSequence = mWriteSequence.get();
+        int droppedRecords = 0;
+        if(writeSequence - mReadSequence > mCapacity) {
+            droppedRecords += (int) (writeSequence - mCapacity - mReadSequence);
+            mReadSequence = writeSequence - mCapacity;
+        }
+        while(mReadSequence < writeSequence) {
+            int slot = (int) (mReadSequence & mMask);
+            long sequence = mSequences.get(slot);
+            // Still being written, pick it up on the next drain
+            if(sequence < mReadSequence) break;
+            String record = mRecords.get(slot);
+            // Check that the record wasn't overwritten while it was being read
+            if(sequence == mReadSequence && mSequences.get(slot) == sequence) {
+                destination.add(record);
+            }else{
+                droppedRecords++;
+            }
+            mReadSequence++;
+        }
+        return droppedRecords;
+    }
+
+    /** Drop all the records currently in the buffer. Must only be called from the consumer thread. */
+    public void clear() {
+        mReadSequence = mWriteSequence.get();
+    }
+}
@@ -3,7 +3,7 @@ package com.kdt;
 import android.content.Context;
 import android.graphics.Typeface;
 import android.util.AttributeSet;
-import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.ToggleButton;
@@ -11,19 +11,36 @@ import android.widget.ToggleButton;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import net.kdt.pojavlaunch.Logger;
 import net.kdt.pojavlaunch.R;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * A class able to display logs to the user.
- * It has support for the Logger class
+ * It has support for the Logger class.
+ * Logged text is buffered and only added to the view once per frame, and only the last
+ * {@link #MAX_DISPLAYED_LINES} lines are kept. The complete log is still available in the log file.
  */
 public class LoggerView extends ConstraintLayout {
+    private static final int MAX_DISPLAYED_LINES = 4000;
+    private static final int MAX_BUFFERED_RECORDS = 8192;
+
+    private final LogRecordBuffer mRecordBuffer = new LogRecordBuffer(MAX_BUFFERED_RECORDS);
+    private final AtomicBoolean mFlushScheduled = new AtomicBoolean(false);
+    private final List<String> mFlushedRecords = new ArrayList<>();
+    private final Runnable mFlushRunnable = this::flushRecords;
+    private final LogLineAdapter mLogLineAdapter = new LogLineAdapter();
     private Logger.eventLogListener mLogListener;
     private ToggleButton mLogToggle;
-    private DefocusableScrollView mScrollView;
-    private TextView mLogTextView;
+    private RecyclerView mLogRecyclerView;
+    private volatile boolean mLogEnabled = false;
+    private boolean mAutoscroll = true;
 
 
     public LoggerView(@NonNull Context context) {
@@ -47,22 +64,22 @@ public class LoggerView extends ConstraintLayout {
      */
     private void init(){
         inflate(getContext(), R.layout.view_logger, this);
-        mLogTextView = findViewById(R.id.content_log_view);
-        mLogTextView.setTypeface(Typeface.MONOSPACE);
-        //TODO clamp the max text so it doesn't go oob
-        mLogTextView.setMaxLines(Integer.MAX_VALUE);
-        mLogTextView.setEllipsize(null);
-        mLogTextView.setVisibility(GONE);
+        mLogRecyclerView = findViewById(R.id.content_log_view);
+        mLogRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        mLogRecyclerView.setAdapter(mLogLineAdapter);
+        // Lines are only ever appended, animating them is a waste of time
+        mLogRecyclerView.setItemAnimator(null);
 
         // Toggle log visibility
         mLogToggle = findViewById(R.id.content_log_toggle_log);
         mLogToggle.setOnCheckedChangeListener(
                 (compoundButton, isChecked) -> {
-                    mLogTextView.setVisibility(isChecked ? VISIBLE : GONE);
+                    mLogEnabled = isChecked;
                     if(isChecked) {
                         Logger.setLogListener(mLogListener);
                     }else{
-                        mLogTextView.setText("");
+                        mRecordBuffer.clear();
+                        mLogLineAdapter.clear();
                         Logger.setLogListener(null); // Makes the JNI code be able to skip expensive logger callbacks
                         // NOTE: was tested by rapidly smashing the log on/off button, no sync issues found :)
                     }
@@ -73,29 +90,114 @@ public class LoggerView extends ConstraintLayout {
         ImageButton cancelButton = findViewById(R.id.log_view_cancel);
         cancelButton.setOnClickListener(view -> LoggerView.this.setVisibility(GONE));
 
-        // Set the scroll view
-        mScrollView = findViewById(R.id.content_log_scroll);
-        mScrollView.setKeepFocusing(true);
-
         //Set up the autoscroll switch
         ToggleButton autoscrollToggle = findViewById(R.id.content_log_toggle_autoscroll);
         autoscrollToggle.setOnCheckedChangeListener(
                 (compoundButton, isChecked) -> {
-                    if(isChecked) mScrollView.fullScroll(View.FOCUS_DOWN);
-                    mScrollView.setKeepFocusing(isChecked);
+                    mAutoscroll = isChecked;
+                    if(isChecked) scrollToBottom();
                 }
         );
         autoscrollToggle.setChecked(true);
 
-        // Listen to logs
+        // Listen to logs. This is called from the logging threads, so only buffer the text there
         mLogListener = text -> {
-            if(mLogTextView.getVisibility() != VISIBLE) return;
-            post(() -> {
-                mLogTextView.append(text + '\n');
-                if(mScrollView.isKeepFocusing()) mScrollView.fullScroll(View.FOCUS_DOWN);
-            });
-
+            if(!mLogEnabled) return;
+            mRecordBuffer.add(text);
+            if(mFlushScheduled.compareAndSet(false, true)) postOnAnimation(mFlushRunnable);
         };
     }
 
+    /** Move the buffered records into the view, called at most once per frame */
+    private void flushRecords() {
+        mFlushScheduled.set(false);
+        mRecordBuffer.drainTo(mFlushedRecords);
+        if(mFlushedRecords.isEmpty() || !mLogEnabled) {
+            mFlushedRecords.clear();
+            return;
+        }
+        mLogLineAdapter.addRecords(mFlushedRecords);
+        mFlushedRecords.clear();
+        if(mAutoscroll) scrollToBottom();
+    }
+
+    private void scrollToBottom() {
+        int itemCount = mLogLineAdapter.getItemCount();
+        if(itemCount > 0) mLogRecyclerView.scrollToPosition(itemCount - 1);
+    }
+
+    /** Adapter keeping the last lines of the log in a ring */
+    private static class LogLineAdapter extends RecyclerView.Adapter<LogLineAdapter.LogLineViewHolder> {
+        private final String[] mLines = new String[MAX_DISPLAYED_LINES];
+        private int mFirstLine = 0;
+        private int mLineCount = 0;
+
+        /** Split the records into lines and append them, dropping the oldest lines if needed */
+        void addRecords(List<String> records) {
+            int oldLineCount = mLineCount;
+            int addedLines = 0;
+            for(String record : records) {
+                int lineStart = 0;
+                int lineEnd;
+                while((lineEnd = record.indexOf('\n', lineStart)) != -1) {
+                    addLine(record.substring(lineStart, lineEnd));
+                    lineStart = lineEnd + 1;
+                    addedLines++;
+                }
+                addLine(lineStart == 0 ? record : record.substring(lineStart));
+                addedLines++;
+            }
+            int removedOldLines = Math.min(oldLineCount, Math.max(0, oldLineCount + addedLines - MAX_DISPLAYED_LINES));
+            int keptNewLines = Math.min(addedLines, MAX_DISPLAYED_LINES);
+            if(removedOldLines > 0) notifyItemRangeRemoved(0, removedOldLines);
+            notifyItemRangeInserted(oldLineCount - removedOldLines, keptNewLines);
+        }
+
+        private void addLine(String line) {
+            if(mLineCount < MAX_DISPLAYED_LINES) {
+                mLines[(mFirstLine + mLineCount) % MAX_DISPLAYED_LINES] = line;
+                mLineCount++;
+            }else{
+                mLines[mFirstLine] = line;
+                mFirstLine = (mFirstLine + 1) % MAX_DISPLAYED_LINES;
+            }
+        }
+
+        void clear() {
+            int oldLineCount = mLineCount;
+            mFirstLine = 0;
+            mLineCount = 0;
+            notifyItemRangeRemoved(0, oldLineCount);
+        }
+
+        @NonNull
+        @Override
+        public LogLineViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            TextView lineView = new TextView(parent.getContext());
+            lineView.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            lineView.setTypeface(Typeface.MONOSPACE);
+            lineView.setTextIsSelectable(true);
+            return new LogLineViewHolder(lineView);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull LogLineViewHolder holder, int position) {
+            holder.mLineView.setText(mLines[(mFirstLine + position) % MAX_DISPLAYED_LINES]);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mLineCount;
+        }
+
+        static class LogLineViewHolder extends RecyclerView.ViewHolder {
+            final TextView mLineView;
+
+            LogLineViewHolder(TextView lineView) {
+                super(lineView);
+                mLineView = lineView;
+            }
+        }
+    }
 }
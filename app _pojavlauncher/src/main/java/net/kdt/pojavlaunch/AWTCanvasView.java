@@ -6,7 +6,7 @@ import android.text.*;
 import android.util.*;
 import android.view.*;
 
-import java.util.*;
+import java.nio.ByteBuffer;
 import net.kdt.pojavlaunch.utils.*;
 
 public class AWTCanvasView extends TextureView implements TextureView.SurfaceTextureListener, Runnable {
@@ -14,11 +14,16 @@ public class AWTCanvasView extends TextureView implements TextureView.SurfaceTex
     public static final int AWT_CANVAS_HEIGHT = 600;
     private static final int MAX_SIZE = 100;
     private static final double NANOS = 1000000000.0;
+    private static final int UNCHANGED_FRAME_DELAY_MS = 8;
     private boolean mIsDestroyed = false;
     private final TextPaint mFpsPaint;
 
     // Temporary count fps https://stackoverflow.com/a/13729241
-    private final LinkedList<Long> mTimes = new LinkedList<Long>(){{add(System.nanoTime());}};
+    private final long[] mTimes = new long[MAX_SIZE];
+    private int mTimesIndex = 0;
+    private int mTimesCount = 0;
+    // Receives the AWT frames, in the pixel format of the bitmap
+    private final ByteBuffer mFrameBuffer = ByteBuffer.allocateDirect(AWT_CANVAS_WIDTH * AWT_CANVAS_HEIGHT * 4);
     
     public AWTCanvasView(Context ctx) {
         this(ctx, null);
@@ -30,6 +35,7 @@ public class AWTCanvasView extends TextureView implements TextureView.SurfaceTex
         mFpsPaint = new TextPaint();
         mFpsPaint.setColor(Color.WHITE);
         mFpsPaint.setTextSize(20);
+        addFrameTime(System.nanoTime());
 
 
         setSurfaceTextureListener(this);
@@ -66,21 +72,29 @@ public class AWTCanvasView extends TextureView implements TextureView.SurfaceTex
         Surface surface = new Surface(getSurfaceTexture());
         Bitmap rgbArrayBitmap = Bitmap.createBitmap(AWT_CANVAS_WIDTH, AWT_CANVAS_HEIGHT, Bitmap.Config.ARGB_8888);
         Paint paint = new Paint();
+        // The bitmap is new, so the first frame needs to be copied even if it didn't change
+        boolean forceUpdate = true;
         try {
             while (!mIsDestroyed && surface.isValid()) {
+                int frameState = JREUtils.renderAWTScreenFrame(mFrameBuffer, forceUpdate);
+                if (frameState == JREUtils.AWT_FRAME_UNCHANGED) {
+                    // The surface still shows this frame, no need to draw it again
+                    Thread.sleep(UNCHANGED_FRAME_DELAY_MS);
+                    continue;
+                }
+                boolean mDrawing = frameState == JREUtils.AWT_FRAME_UPDATED;
+                if (mDrawing) {
+                    mFrameBuffer.rewind();
+                    rgbArrayBitmap.copyPixelsFromBuffer(mFrameBuffer);
+                    forceUpdate = false;
+                }
                 canvas = surface.lockCanvas(null);
                 canvas.drawRGB(0, 0, 0);
-                int[] rgbArray = JREUtils.renderAWTScreenFrame(/* canvas, mWidth, mHeight */);
-                boolean mDrawing = rgbArray != null;
-                if (rgbArray != null) {
-                    canvas.save();
-                    rgbArrayBitmap.setPixels(rgbArray, 0, AWT_CANVAS_WIDTH, 0, 0, AWT_CANVAS_WIDTH, AWT_CANVAS_HEIGHT);
-                    canvas.drawBitmap(rgbArrayBitmap, 0, 0, paint);
-                    canvas.restore();
-                }
+                if (mDrawing) canvas.drawBitmap(rgbArrayBitmap, 0, 0, paint);
                 canvas.drawText("FPS: " + (Math.round(fps() * 10) / 10) + ", drawing=" + mDrawing, 0, 20, mFpsPaint);
                 surface.unlockCanvasAndPost(canvas);
             }
+        } catch (InterruptedException ignored) {
         } catch (Throwable throwable) {
             Tools.showError(getContext(), throwable);
         }
@@ -91,13 +105,16 @@ public class AWTCanvasView extends TextureView implements TextureView.SurfaceTex
     /** Calculates and returns frames per second */
     private double fps() {
         long lastTime = System.nanoTime();
-        double difference = (lastTime - mTimes.getFirst()) / NANOS;
-        mTimes.addLast(lastTime);
-        int size = mTimes.size();
-        if (size > MAX_SIZE) {
-            mTimes.removeFirst();
-        }
-        return difference > 0 ? mTimes.size() / difference : 0.0;
+        long firstTime = mTimes[(mTimesIndex - mTimesCount + MAX_SIZE) % MAX_SIZE];
+        double difference = (lastTime - firstTime) / NANOS;
+        addFrameTime(lastTime);
+        return difference > 0 ? mTimesCount / difference : 0.0;
+    }
+
+    private void addFrameTime(long time) {
+        mTimes[mTimesIndex] = time;
+        mTimesIndex = (mTimesIndex + 1) % MAX_SIZE;
+        if (mTimesCount < MAX_SIZE) mTimesCount++;
     }
 
     /** Make the view fit the proper aspect ratio of the surface */
@@ -1,6 +1,8 @@
 package net.kdt.pojavlaunch;
 
 import androidx.annotation.Keep;
+import androidx.annotation.Nullable;
+
 import java.util.*;
 import net.kdt.pojavlaunch.value.*;
 
@@ -10,6 +12,73 @@ public class JMinecraftVersionList {
     public Map<String, String> latest;
     public Version[] versions;
 
+    // Lookups built on first use, not part of the JSON structure
+    private transient int[][] mTypeIndices;
+    private transient Map<String, Version> mVersionsById;
+
+    /**
+     * Get the positions of the versions of a type in the versions array. The positions of all
+     * types are computed in a single pass over the array the first time this is called.
+     * @param type the type of the versions
+     * @return the positions, in list order. Must not be modified
+     */
+    public synchronized int[] getVersionIndices(VersionType type) {
+        if(mTypeIndices == null) {
+            VersionType[] types = VersionType.values();
+            int[] typeCounts = new int[types.length];
+            byte[] versionTypes = new byte[versions.length];
+            for(int i = 0; i < versions.length; i++) {
+                int typeOrdinal = VersionType.fromString(versions[i].type).ordinal();
+                versionTypes[i] = (byte) typeOrdinal;
+                typeCounts[typeOrdinal]++;
+            }
+            mTypeIndices = new int[types.length][];
+            for(int i = 0; i < types.length; i++) mTypeIndices[i] = new int[typeCounts[i]];
+            Arrays.fill(typeCounts, 0);
+            for(int i = 0; i < versionTypes.length; i++) {
+                int typeOrdinal = versionTypes[i];
+                mTypeIndices[typeOrdinal][typeCounts[typeOrdinal]++] = i;
+            }
+        }
+        return mTypeIndices[type.ordinal()];
+    }
+
+    /**
+     * Find a version of the list by its ID
+     * @param id the ID of the version
+     * @return the version, or null if it is not in the list
+     */
+    public synchronized @Nullable Version getVersion(String id) {
+        if(mVersionsById == null) {
+            mVersionsById = new HashMap<>(versions.length * 2);
+            for(Version version : versions) {
+                // Keep the first one, like a linear search would
+                if(!mVersionsById.containsKey(version.id)) mVersionsById.put(version.id, version);
+            }
+        }
+        return mVersionsById.get(id);
+    }
+
+    /** The known types of versions in the version manifest */
+    public enum VersionType {
+        RELEASE,
+        SNAPSHOT,
+        OLD_BETA,
+        OLD_ALPHA,
+        OTHER;
+
+        public static VersionType fromString(@Nullable String type) {
+            if(type == null) return OTHER;
+            switch (type) {
+                case "release": return RELEASE;
+                case "snapshot": return SNAPSHOT;
+                case "old_beta": return OLD_BETA;
+                case "old_alpha": return OLD_ALPHA;
+                default: return OTHER;
+            }
+        }
+    }
+
     @Keep
     public static class FileProperties {
         public String id, sha1, url;
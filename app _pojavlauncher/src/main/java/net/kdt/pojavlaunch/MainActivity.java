@@ -136,7 +136,7 @@ public class MainActivity extends BaseActivity implements ControlButtonMenuListe
         };
 
         // Recompute the gui scale when options are changed
-        MCOptionUtils.MCOptionListener optionListener = MCOptionUtils::getMcScale;
+        MCOptionUtils.MCOptionListener optionListener = changedKeys -> MCOptionUtils.getMcScale();
         MCOptionUtils.addMCOptionListener(optionListener);
         mControlLayout.setModifiable(false);
 
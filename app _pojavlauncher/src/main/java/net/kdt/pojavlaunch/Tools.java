@@ -48,6 +48,7 @@ import androidx.fragment.app.FragmentActivity;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
 import net.kdt.pojavlaunch.lifecycle.ContextExecutor;
 import net.kdt.pojavlaunch.lifecycle.ContextExecutorTask;
@@ -64,8 +65,10 @@ import net.kdt.pojavlaunch.utils.FileUtils;
 import net.kdt.pojavlaunch.utils.GLInfoUtils;
 import net.kdt.pojavlaunch.utils.JREUtils;
 import net.kdt.pojavlaunch.utils.JSONUtils;
+import net.kdt.pojavlaunch.utils.LaunchClasspathCache;
 import net.kdt.pojavlaunch.utils.MCOptionUtils;
 import net.kdt.pojavlaunch.utils.OldVersionsUtils;
+import net.kdt.pojavlaunch.utils.ResolvedVersionCache;
 import net.kdt.pojavlaunch.value.DependentLibrary;
 import net.kdt.pojavlaunch.value.MinecraftAccount;
 import net.kdt.pojavlaunch.value.MinecraftLibraryArtifact;
@@ -82,8 +85,10 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
@@ -92,7 +97,10 @@ import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -312,7 +320,7 @@ public final class Tools {
         OldVersionsUtils.selectOpenGlVersion(versionInfo);
 
 
-        String launchClassPath = generateLaunchClassPath(versionInfo, versionId);
+        String launchClassPath = getLaunchClassPath(versionInfo, versionId);
 
         List<String> javaArgList = new ArrayList<>();
 
@@ -335,7 +343,7 @@ public final class Tools {
 
         javaArgList.addAll(Arrays.asList(getMinecraftJVMArgs(versionId, gamedir)));
         javaArgList.add("-cp");
-        javaArgList.add(launchClassPath + ":" + getLWJGL3ClassPath());
+        javaArgList.add(launchClassPath);
 
         javaArgList.add(versionInfo.mainClass);
         javaArgList.addAll(Arrays.asList(launchArgs));
@@ -542,7 +550,7 @@ public final class Tools {
             library.downloads.artifact.path != null)
             return library.downloads.artifact.path;
         String[] libInfos = library.name.split(":");
-        return libInfos[0].replaceAll("\\.", "/") + "/" + libInfos[1] + "/" + libInfos[2] + "/" + libInfos[1] + "-" + libInfos[2] + ".jar";
+        return libInfos[0].replace('.', '/') + "/" + libInfos[1] + "/" + libInfos[2] + "/" + libInfos[1] + "-" + libInfos[2] + ".jar";
     }
 
     public static String getClientClasspath(String version) {
@@ -565,11 +573,56 @@ public final class Tools {
         return libStr.toString();
     }
 
+    /**
+     * Get the full launch classpath of a version, including the LWJGL jars. The classpath is cached
+     * for as long as the version files, the LWJGL directory, the directories of the libraries
+     * and the launcher build stay the same. Adding, removing or replacing a library changes the
+     * modification time of its directory, so the cache doesn't need to be invalidated by hand.
+     * @param info the resolved version info
+     * @param versionName the name of the version
+     * @return the classpath
+     */
+    private static String getLaunchClassPath(JMinecraftVersionList.Version info, String versionName) {
+        String[] libraryPaths = generateLibClasspath(info);
+        String fingerprint = ResolvedVersionCache.getCachedFingerprint(versionName, false);
+        if(fingerprint != null) {
+            fingerprint += BuildConfig.VERSION_CODE + "|" + new File(Tools.DIR_GAME_HOME, "lwjgl3").lastModified()
+                    + "|" + getLibraryDirectoriesStamp(libraryPaths);
+            String cachedClassPath = LaunchClasspathCache.get(versionName, fingerprint);
+            if(cachedClassPath != null) return cachedClassPath;
+        }
+        String classPath = generateLaunchClassPath(libraryPaths, versionName) + ":" + getLWJGL3ClassPath();
+        if(fingerprint != null) LaunchClasspathCache.put(versionName, fingerprint, classPath);
+        return classPath;
+    }
+
+    /**
+     * Combine the modification times of the directories that contain the libraries. This is much
+     * cheaper than checking every library, as most libraries share their directory with nothing else
+     * and the directories are only checked once each.
+     * @param libraryPaths the resolved paths of the libraries
+     * @return a stamp that changes whenever a library directory is modified, created or removed
+     */
+    private static long getLibraryDirectoriesStamp(String[] libraryPaths) {
+        HashSet<String> checkedDirectories = new HashSet<>(libraryPaths.length);
+        long stamp = 0;
+        for(String libraryPath : libraryPaths) {
+            int separatorIndex = libraryPath.lastIndexOf('/');
+            if(separatorIndex == -1) continue;
+            String directory = libraryPath.substring(0, separatorIndex);
+            if(!checkedDirectories.add(directory)) continue;
+            stamp = stamp * 31 + new File(directory).lastModified();
+        }
+        return stamp;
+    }
+
     private final static boolean isClientFirst = false;
     public static String generateLaunchClassPath(JMinecraftVersionList.Version info, String actualname) {
-        StringBuilder finalClasspath = new StringBuilder(); //versnDir + "/" + version + "/" + version + ".jar:";
+        return generateLaunchClassPath(generateLibClasspath(info), actualname);
+    }
 
-        String[] classpath = generateLibClasspath(info);
+    private static String generateLaunchClassPath(String[] classpath, String actualname) {
+        StringBuilder finalClasspath = new StringBuilder(); //versnDir + "/" + version + "/" + version + ".jar:";
 
         if (isClientFirst) {
             finalClasspath.append(getClientClasspath(actualname));
@@ -878,17 +931,34 @@ public final class Tools {
         return getVersionInfo(versionName, false);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    /**
+     * Read a version, resolving its inheritance if required. Resolved versions are cached
+     * for as long as the version files they were made from stay unchanged, so the returned
+     * version is shared and must not be modified.
+     * @param versionName the name of the version to read
+     * @param skipInheriting whether to return the version as-is, without resolving its parent
+     * @return the version
+     */
     public static JMinecraftVersionList.Version getVersionInfo(String versionName, boolean skipInheriting) {
+        JMinecraftVersionList.Version cachedVer = ResolvedVersionCache.get(versionName, skipInheriting);
+        if(cachedVer != null) return cachedVer;
         try {
-            JMinecraftVersionList.Version customVer = Tools.GLOBAL_GSON.fromJson(read(DIR_HOME_VERSION + "/" + versionName + "/" + versionName + ".json"), JMinecraftVersionList.Version.class);
+            List<File> chainFiles = new ArrayList<>(2);
+            File customVerFile = new File(DIR_HOME_VERSION + "/" + versionName + "/" + versionName + ".json");
+            chainFiles.add(customVerFile);
+            // Take the fingerprint before reading, so that a change during the read invalidates the cache
+            String fingerprint = ResolvedVersionCache.getFingerprint(chainFiles);
+            JMinecraftVersionList.Version customVer = readJson(customVerFile, JMinecraftVersionList.Version.class);
             if (skipInheriting || customVer.inheritsFrom == null || customVer.inheritsFrom.equals(customVer.id)) {
                 preProcessLibraries(customVer.libraries);
             } else {
                 JMinecraftVersionList.Version inheritsVer;
+                File inheritsVerFile = new File(DIR_HOME_VERSION + "/" + customVer.inheritsFrom + "/" + customVer.inheritsFrom + ".json");
+                chainFiles.add(inheritsVerFile);
+                fingerprint += ResolvedVersionCache.getFingerprint(Collections.singletonList(inheritsVerFile));
                 //If it won't download, just search for it
                 try{
-                    inheritsVer = Tools.GLOBAL_GSON.fromJson(read(DIR_HOME_VERSION + "/" + customVer.inheritsFrom + "/" + customVer.inheritsFrom + ".json"), JMinecraftVersionList.Version.class);
+                    inheritsVer = readJson(inheritsVerFile, JMinecraftVersionList.Version.class);
                 }catch(IOException e) {
                     throw new RuntimeException("Can't find the source version for "+ versionName +" (req version="+customVer.inheritsFrom+")");
                 }
@@ -899,67 +969,12 @@ public final class Tools {
                         "releaseTime", "time", "type"
                 );
 
-                // Go through the libraries, remove the ones overridden by the custom version
-                List<DependentLibrary> inheritLibraryList = new ArrayList<>(Arrays.asList(inheritsVer.libraries));
-                outer_loop:
-                for(DependentLibrary library : customVer.libraries){
-                    // Clean libraries overridden by the custom version
-                    String libName = library.name.substring(0, library.name.lastIndexOf(":"));
-
-                    for(DependentLibrary inheritLibrary : inheritLibraryList) {
-                        String inheritLibName = inheritLibrary.name.substring(0, inheritLibrary.name.lastIndexOf(":"));
-
-                        if(libName.equals(inheritLibName)){
-                            Log.d(APP_NAME, "Library " + libName + ": Replaced version " +
-                                    libName.substring(libName.lastIndexOf(":") + 1) + " with " +
-                                    inheritLibName.substring(inheritLibName.lastIndexOf(":") + 1));
-
-                            // Remove the library , superseded by the overriding libs
-                            inheritLibraryList.remove(inheritLibrary);
-                            continue outer_loop;
-                        }
-                    }
-                }
-
-                // Fuse libraries
-                inheritLibraryList.addAll(Arrays.asList(customVer.libraries));
-                inheritsVer.libraries = inheritLibraryList.toArray(new DependentLibrary[0]);
+                inheritsVer.libraries = mergeLibraries(inheritsVer.libraries, customVer.libraries);
                 preProcessLibraries(inheritsVer.libraries);
 
-
                 // Inheriting Minecraft 1.13+ with append custom args
                 if (inheritsVer.arguments != null && customVer.arguments != null) {
-                    List totalArgList = new ArrayList(Arrays.asList(inheritsVer.arguments.game));
-
-                    int nskip = 0;
-                    for (int i = 0; i < customVer.arguments.game.length; i++) {
-                        if (nskip > 0) {
-                            nskip--;
-                            continue;
-                        }
-
-                        Object perCustomArg = customVer.arguments.game[i];
-                        if (perCustomArg instanceof String) {
-                            String perCustomArgStr = (String) perCustomArg;
-                            // Check if there is a duplicate argument on combine
-                            if (perCustomArgStr.startsWith("--") && totalArgList.contains(perCustomArgStr)) {
-                                perCustomArg = customVer.arguments.game[i + 1];
-                                if (perCustomArg instanceof String) {
-                                    perCustomArgStr = (String) perCustomArg;
-                                    // If the next is argument value, skip it
-                                    if (!perCustomArgStr.startsWith("--")) {
-                                        nskip++;
-                                    }
-                                }
-                            } else {
-                                totalArgList.add(perCustomArgStr);
-                            }
-                        } else if (!totalArgList.contains(perCustomArg)) {
-                            totalArgList.add(perCustomArg);
-                        }
-                    }
-
-                    inheritsVer.arguments.game = totalArgList.toArray(new Object[0]);
+                    inheritsVer.arguments.game = mergeGameArguments(inheritsVer.arguments.game, customVer.arguments.game);
                 }
 
                 customVer = inheritsVer;
@@ -969,12 +984,95 @@ public final class Tools {
             if (customVer.javaVersion != null && customVer.javaVersion.majorVersion == 0) {
                 customVer.javaVersion.majorVersion = customVer.javaVersion.version;
             }
+            ResolvedVersionCache.put(versionName, skipInheriting, chainFiles, fingerprint, customVer);
             return customVer;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Get the key used to match libraries that override each other: groupId:artifactId[:classifier]
+     * @param libraryName the maven name of the library
+     * @return the override key
+     */
+    private static String getLibraryOverrideKey(String libraryName) {
+        int extensionIndex = libraryName.indexOf('@');
+        if(extensionIndex != -1) libraryName = libraryName.substring(0, extensionIndex);
+        String[] nameParts = libraryName.split(":");
+        if(nameParts.length < 3) return libraryName;
+        if(nameParts.length == 3) return nameParts[0] + ":" + nameParts[1];
+        return nameParts[0] + ":" + nameParts[1] + ":" + nameParts[3];
+    }
+
+    /**
+     * Merge the libraries of a custom version into the libraries of the version it inherits from.
+     * Inherited libraries that are overridden by the custom version get removed.
+     */
+    private static DependentLibrary[] mergeLibraries(DependentLibrary[] inheritLibraries, DependentLibrary[] customLibraries) {
+        HashMap<String, DependentLibrary> customLibraryKeys = new HashMap<>(customLibraries.length * 2);
+        for(DependentLibrary library : customLibraries) {
+            customLibraryKeys.put(getLibraryOverrideKey(library.name), library);
+        }
+
+        List<DependentLibrary> mergedLibraryList = new ArrayList<>(inheritLibraries.length + customLibraries.length);
+        for(DependentLibrary inheritLibrary : inheritLibraries) {
+            DependentLibrary overridingLibrary = customLibraryKeys.get(getLibraryOverrideKey(inheritLibrary.name));
+            if(overridingLibrary != null) {
+                // Remove the library , superseded by the overriding libs
+                Log.d(APP_NAME, "Library " + inheritLibrary.name + ": Replaced with " + overridingLibrary.name);
+                continue;
+            }
+            mergedLibraryList.add(inheritLibrary);
+        }
+
+        // Fuse libraries
+        mergedLibraryList.addAll(Arrays.asList(customLibraries));
+        return mergedLibraryList.toArray(new DependentLibrary[0]);
+    }
+
+    /**
+     * Append the game arguments of a custom version to the arguments of the version it inherits from,
+     * skipping the options that are already present along with their values.
+     */
+    private static Object[] mergeGameArguments(Object[] inheritArgs, Object[] customArgs) {
+        List<Object> totalArgList = new ArrayList<>(inheritArgs.length + customArgs.length);
+        HashSet<Object> totalArgSet = new HashSet<>(inheritArgs.length + customArgs.length);
+        totalArgList.addAll(Arrays.asList(inheritArgs));
+        totalArgSet.addAll(totalArgList);
+
+        int nskip = 0;
+        for (int i = 0; i < customArgs.length; i++) {
+            if (nskip > 0) {
+                nskip--;
+                continue;
+            }
+
+            Object perCustomArg = customArgs[i];
+            if (perCustomArg instanceof String) {
+                String perCustomArgStr = (String) perCustomArg;
+                // Check if there is a duplicate argument on combine
+                if (perCustomArgStr.startsWith("--") && totalArgSet.contains(perCustomArgStr)) {
+                    if (i + 1 >= customArgs.length) continue;
+                    perCustomArg = customArgs[i + 1];
+                    if (perCustomArg instanceof String) {
+                        perCustomArgStr = (String) perCustomArg;
+                        // If the next is argument value, skip it
+                        if (!perCustomArgStr.startsWith("--")) {
+                            nskip++;
+                        }
+                    }
+                } else {
+                    totalArgList.add(perCustomArgStr);
+                    totalArgSet.add(perCustomArgStr);
+                }
+            } else if (totalArgSet.add(perCustomArg)) {
+                totalArgList.add(perCustomArg);
+            }
+        }
+        return totalArgList.toArray(new Object[0]);
+    }
+
     // Prevent NullPointerException
     private static void insertSafety(JMinecraftVersionList.Version targetVer, JMinecraftVersionList.Version fromVer, String... keyArr) {
         for (String key : keyArr) {
@@ -1006,6 +1104,28 @@ public final class Tools {
         return read(new FileInputStream(path));
     }
 
+    /**
+     * Parse a JSON document straight from a stream with the global Gson instance, without
+     * reading the whole document into a String first. The stream is closed afterwards.
+     * @param is the stream to read the document from
+     * @param tClass the class of the resulting object
+     * @return the parsed object, or null if the stream is empty
+     * @throws IOException if reading from the stream fails
+     */
+    public static <T> T readJson(InputStream is, Class<T> tClass) throws IOException {
+        try (Reader reader = new InputStreamReader(new BufferedInputStream(is), StandardCharsets.UTF_8)) {
+            return GLOBAL_GSON.fromJson(reader, tClass);
+        }catch (JsonParseException e) {
+            // Gson wraps I/O errors that happen while parsing, unwrap them
+            if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    public static <T> T readJson(File path, Class<T> tClass) throws IOException {
+        return readJson(new FileInputStream(path), tClass);
+    }
+
     public static void write(String path, String content) throws IOException {
         File file = new File(path);
         FileUtils.ensureParentDirectory(file);
@@ -0,0 +1,97 @@
+package net.kdt.pojavlaunch.customcontrols;
+
+/**
+ * A uniform grid over the control layout, used to find the buttons under a pointer without
+ * looking at every button. Each cell lists the indices of the buttons whose bounds overlap it,
+ * in the order the buttons were given, so a lookup returns the same button a linear scan would.
+ * Points and bounds outside of the grid are clamped to the border cells.
+ */
+public class ButtonHitGrid {
+    private static final int GRID_SIZE = 16;
+    private static final int[] NO_BUTTONS = new int[0];
+
+    private final int[][] mCells = new int[GRID_SIZE * GRID_SIZE][];
+    private float[] mBounds = new float[0];
+    private float mCellWidth = 1, mCellHeight = 1;
+
+    public ButtonHitGrid() {
+        clear();
+    }
+
+    /** Remove all buttons from the grid */
+    public void clear() {
+        for(int i = 0; i < mCells.length; i++) mCells[i] = NO_BUTTONS;
+        mBounds = new float[0];
+    }
+
+    /**
+     * Rebuild the grid for a set of buttons.
+     * @param width the width of the area covered by the grid
+     * @param height the height of the area covered by the grid
+     * @param bounds the bounds of the buttons, as consecutive left, top, right, bottom values
+     * @param buttonCount the amount of buttons in the bounds array
+     */
+    public void rebuild(float width, float height, float[] bounds, int buttonCount) {
+        mCellWidth = Math.max(width, 1) / GRID_SIZE;
+        mCellHeight = Math.max(height, 1) / GRID_SIZE;
+        mBounds = new float[buttonCount * 4];
+        System.arraycopy(bounds, 0, mBounds, 0, mBounds.length);
+
+        // First pass: count the buttons in each cell, so that every cell is allocated only once
+        int[] cellCounts = new int[mCells.length];
+        for(int i = 0; i < buttonCount; i++) {
+            int startColumn = getColumn(bounds[i * 4]), endColumn = getColumn(bounds[i * 4 + 2]);
+            int startRow = getRow(bounds[i * 4 + 1]), endRow = getRow(bounds[i * 4 + 3]);
+            for(int row = startRow; row <= endRow; row++) {
+                for(int column = startColumn; column <= endColumn; column++) {
+                    cellCounts[row * GRID_SIZE + column]++;
+                }
+            }
+        }
+        for(int i = 0; i < mCells.length; i++) {
+            mCells[i] = cellCounts[i] == 0 ? NO_BUTTONS : new int[cellCounts[i]];
+            cellCounts[i] = 0;
+        }
+        // Second pass: fill the cells, in button order
+        for(int i = 0; i < buttonCount; i++) {
+            int startColumn = getColumn(bounds[i * 4]), endColumn = getColumn(bounds[i * 4 + 2]);
+            int startRow = getRow(bounds[i * 4 + 1]), endRow = getRow(bounds[i * 4 + 3]);
+            for(int row = startRow; row <= endRow; row++) {
+                for(int column = startColumn; column <= endColumn; column++) {
+                    int cell = row * GRID_SIZE + column;
+                    mCells[cell][cellCounts[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the first button that strictly contains a point.
+     * @param x the horizontal coordinate of the point
+     * @param y the vertical coordinate of the point
+     * @return the index of the button, or -1 if there is no button at this point
+     */
+    public int findButtonAt(float x, float y) {
+        int[] cell = mCells[getRow(y) * GRID_SIZE + getColumn(x)];
+        for(int index : cell) {
+            int offset = index * 4;
+            if(x > mBounds[offset] && x < mBounds[offset + 2]
+                    && y > mBounds[offset + 1] && y < mBounds[offset + 3]) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int getColumn(float x) {
+        return clampCell((int) (x / mCellWidth));
+    }
+
+    private int getRow(float y) {
+        return clampCell((int) (y / mCellHeight));
+    }
+
+    private static int clampCell(int cell) {
+        return Math.max(0, Math.min(GRID_SIZE - 1, cell));
+    }
+}
@@ -2,24 +2,21 @@ package net.kdt.pojavlaunch.customcontrols;
 
 import static net.kdt.pojavlaunch.LwjglGlfwKeycode.GLFW_KEY_UNKNOWN;
 
-import android.util.ArrayMap;
-
 import androidx.annotation.Keep;
 
 import net.kdt.pojavlaunch.Tools;
 import net.kdt.pojavlaunch.customcontrols.buttons.ControlInterface;
 import net.kdt.pojavlaunch.prefs.LauncherPreferences;
-import net.kdt.pojavlaunch.utils.JSONUtils;
+import net.objecthunter.exp4j.Expression;
 import net.objecthunter.exp4j.ExpressionBuilder;
 import net.objecthunter.exp4j.function.Function;
 
 import org.lwjgl.glfw.CallbackBridge;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Keep
 public class ControlData {
@@ -36,13 +33,27 @@ public class ControlData {
 
     private static ControlData[] SPECIAL_BUTTONS;
     private static List<String> SPECIAL_BUTTON_NAME_ARRAY;
-    private static WeakReference<ExpressionBuilder> builder = new WeakReference<>(null);
-    private static WeakReference<ArrayMap<String, String>> conversionMap = new WeakReference<>(null);
-
-    static {
-        buildExpressionBuilder();
-        buildConversionMap();
-    }
+    /** Variables that can be used in dynamic positions, as ${variable} */
+    private static final String[] DYNAMIC_POS_VARIABLES = {
+            "top", "left", "right", "bottom", "width", "height",
+            "screen_width", "screen_height", "margin", "preferred_scale"
+    };
+    private static final Function[] DYNAMIC_POS_FUNCTIONS = {
+            new Function("dp", 1) {
+                @Override
+                public double apply(double... args) {
+                    return Tools.pxToDp((float) args[0]);
+                }
+            },
+            new Function("px", 1) {
+                @Override
+                public double apply(double... args) {
+                    return Tools.dpToPx((float) args[0]);
+                }
+            }
+    };
+    /** Dynamic positions compiled into expressions, keyed by their formula. Only used from the UI thread. */
+    private static final HashMap<String, Expression> sCompiledExpressions = new HashMap<>();
 
     // Internal usage only
     public transient boolean isHideable;
@@ -185,11 +196,6 @@ public class ControlData {
         return SPECIAL_BUTTON_NAME_ARRAY;
     }
 
-    private static float calculate(String math) {
-        setExpression(math);
-        return (float) builder.get().build().evaluate();
-    }
-
     private static int[] inflateKeycodeArray(int[] keycodes) {
         int[] inflatedArray = new int[]{GLFW_KEY_UNKNOWN, GLFW_KEY_UNKNOWN, GLFW_KEY_UNKNOWN, GLFW_KEY_UNKNOWN};
         System.arraycopy(keycodes, 0, inflatedArray, 0, keycodes.length);
@@ -197,62 +203,44 @@ public class ControlData {
     }
 
     /**
-     * Create a builder, keep a weak reference to it to use it with all views on first inflation
+     * Compile a dynamic position formula into an expression, where the ${variable} placeholders
+     * become expression variables. Compiled expressions are cached, so every distinct formula is
+     * only parsed once.
+     * @param dynamicPos the dynamic position formula
+     * @return the compiled expression
      */
-    private static void buildExpressionBuilder() {
-        ExpressionBuilder expressionBuilder = new ExpressionBuilder("1 + 1")
-                .function(new Function("dp", 1) {
-                    @Override
-                    public double apply(double... args) {
-                        return Tools.pxToDp((float) args[0]);
-                    }
-                })
-                .function(new Function("px", 1) {
-                    @Override
-                    public double apply(double... args) {
-                        return Tools.dpToPx((float) args[0]);
-                    }
-                });
-        builder = new WeakReference<>(expressionBuilder);
-    }
-
-    /**
-     * wrapper for the WeakReference to the expressionField.
-     *
-     * @param stringExpression the expression to set.
-     */
-    private static void setExpression(String stringExpression) {
-        if (builder.get() == null) buildExpressionBuilder();
-        builder.get().expression(stringExpression);
-    }
-
-    /**
-     * Build a shared conversion map without the ControlData dependent values
-     * You need to set the view dependent values before using it.
-     */
-    private static void buildConversionMap() {
-        // Values in the map below may be always changed
-        ArrayMap<String, String> keyValueMap = new ArrayMap<>(10);
-        keyValueMap.put("top", "0");
-        keyValueMap.put("left", "0");
-        keyValueMap.put("right", "DUMMY_RIGHT");
-        keyValueMap.put("bottom", "DUMMY_BOTTOM");
-        keyValueMap.put("width", "DUMMY_WIDTH");
-        keyValueMap.put("height", "DUMMY_HEIGHT");
-        keyValueMap.put("screen_width", "DUMMY_DATA");
-        keyValueMap.put("screen_height", "DUMMY_DATA");
-        keyValueMap.put("margin", Integer.toString((int) ControlInterface.getMarginDistance()));
-        keyValueMap.put("preferred_scale", "DUMMY_DATA");
-
-        conversionMap = new WeakReference<>(keyValueMap);
+    private static Expression compileDynamicPos(String dynamicPos) {
+        Expression expression = sCompiledExpressions.get(dynamicPos);
+        if(expression != null) return expression;
+        String formula = dynamicPos;
+        for(String variable : DYNAMIC_POS_VARIABLES) {
+            formula = formula.replace("${" + variable + "}", variable);
+        }
+        expression = new ExpressionBuilder(formula)
+                .functions(DYNAMIC_POS_FUNCTIONS)
+                .variables(DYNAMIC_POS_VARIABLES)
+                .build();
+        sCompiledExpressions.put(dynamicPos, expression);
+        return expression;
     }
 
     public float insertDynamicPos(String dynamicPos) {
-        // Insert value to ${variable}
-        String insertedPos = JSONUtils.insertSingleJSONValue(dynamicPos, fillConversionMap());
-
-        // Calculate, because the dynamic position contains some math equations
-        return calculate(insertedPos);
+        Expression expression = compileDynamicPos(dynamicPos);
+
+        // Set the control dependent values, then calculate
+        float width = getWidth();
+        float height = getHeight();
+        expression.setVariable("top", 0);
+        expression.setVariable("left", 0);
+        expression.setVariable("right", CallbackBridge.physicalWidth - width);
+        expression.setVariable("bottom", CallbackBridge.physicalHeight - height);
+        expression.setVariable("width", width);
+        expression.setVariable("height", height);
+        expression.setVariable("screen_width", CallbackBridge.physicalWidth);
+        expression.setVariable("screen_height", CallbackBridge.physicalHeight);
+        expression.setVariable("margin", (int) ControlInterface.getMarginDistance());
+        expression.setVariable("preferred_scale", LauncherPreferences.PREF_BUTTONSIZE);
+        return (float) expression.evaluate();
     }
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
@@ -281,28 +269,4 @@ public class ControlData {
         height = Tools.pxToDp(heightInPx);
     }
 
-    /**
-     * Fill the conversionMap with controlData dependent values.
-     * The returned valueMap should NOT be kept in memory.
-     *
-     * @return the valueMap to use.
-     */
-    private Map<String, String> fillConversionMap() {
-        ArrayMap<String, String> valueMap = conversionMap.get();
-        if (valueMap == null) {
-            buildConversionMap();
-            valueMap = conversionMap.get();
-        }
-
-        valueMap.put("right", Float.toString(CallbackBridge.physicalWidth - getWidth()));
-        valueMap.put("bottom", Float.toString(CallbackBridge.physicalHeight - getHeight()));
-        valueMap.put("width", Float.toString(getWidth()));
-        valueMap.put("height", Float.toString(getHeight()));
-        valueMap.put("screen_width", Integer.toString(CallbackBridge.physicalWidth));
-        valueMap.put("screen_height", Integer.toString(CallbackBridge.physicalHeight));
-        valueMap.put("preferred_scale", Float.toString(LauncherPreferences.PREF_BUTTONSIZE));
-
-        return valueMap;
-    }
-
 }
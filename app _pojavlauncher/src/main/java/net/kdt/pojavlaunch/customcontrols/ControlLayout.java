@@ -49,6 +49,10 @@ public class ControlLayout extends FrameLayout {
 
 	/* Cache to buttons for performance purposes */
 	private List<ControlInterface> mButtons;
+	/* Spatial index of the swipeable buttons, rebuilt when the buttons move */
+	private final ButtonHitGrid mHitGrid = new ButtonHitGrid();
+	private final List<ControlInterface> mSwipeableButtons = new ArrayList<>();
+	private boolean mHitGridDirty = true;
 	private boolean mModifiable = false;
 	private boolean mIsModified;
 	private boolean mControlVisible = false;
@@ -261,6 +265,7 @@ public class ControlLayout extends FrameLayout {
 			removeEditWindow();
 		}
 		mModifiable = isModifiable;
+		invalidateHitGrid();
 		if(isModifiable){
 			// In edit mode, all controls have to be shown
 			for(ControlInterface button : getButtonChildren()){
@@ -278,7 +283,7 @@ public class ControlLayout extends FrameLayout {
 	}
 
 	public List<ControlInterface> getButtonChildren(){
-		if(mModifiable || mButtons == null){
+		if(mButtons == null){
 			mButtons = new ArrayList<>();
 			for(int i=0; i<getChildCount(); ++i){
 				View v = getChildAt(i);
@@ -295,11 +300,55 @@ public class ControlLayout extends FrameLayout {
 			button.setDynamicX(button.getProperties().dynamicX);
 			button.setDynamicY(button.getProperties().dynamicY);
 		}
+		invalidateHitGrid();
+	}
+
+	/** Mark the touch hit-testing grid as outdated. Must be called when a button moves or changes size. */
+	public void invalidateHitGrid() {
+		mHitGridDirty = true;
+	}
+
+	private void rebuildHitGridIfNeeded() {
+		if(!mHitGridDirty) return;
+		mHitGridDirty = false;
+		mSwipeableButtons.clear();
+		for(ControlInterface button : getButtonChildren()) {
+			if(button.getProperties().isSwipeable) mSwipeableButtons.add(button);
+		}
+		float[] bounds = new float[mSwipeableButtons.size() * 4];
+		for(int i = 0; i < mSwipeableButtons.size(); i++) {
+			View view = mSwipeableButtons.get(i).getControlView();
+			bounds[i * 4] = view.getX();
+			bounds[i * 4 + 1] = view.getY();
+			bounds[i * 4 + 2] = view.getX() + view.getWidth();
+			bounds[i * 4 + 3] = view.getY() + view.getHeight();
+		}
+		mHitGrid.rebuild(getWidth(), getHeight(), bounds, mSwipeableButtons.size());
+	}
+
+	@Override
+	protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+		super.onLayout(changed, left, top, right, bottom);
+		// Button sizes are only known after the layout pass
+		invalidateHitGrid();
+	}
+
+	@Override
+	public void onViewAdded(View child) {
+		super.onViewAdded(child);
+		if(child instanceof ControlInterface) {
+			mButtons = null;
+			invalidateHitGrid();
+		}
 	}
 
     @Override
     public void onViewRemoved(View child) {
         super.onViewRemoved(child);
+        if(child instanceof ControlInterface) {
+			mButtons = null;
+			invalidateHitGrid();
+		}
         if(child instanceof ControlInterface && mControlDialog != null){
 			mControlDialog.disappearColor();
             mControlDialog.disappear(false);
@@ -366,9 +415,8 @@ public class ControlLayout extends FrameLayout {
 		if (ev.getActionMasked() != MotionEvent.ACTION_MOVE) return;
 
 
-		//Optimization pass to avoid looking at all children again
+		//Optimization pass to avoid looking up the buttons again
 		if (lastControlButton != null) {
-			System.out.println("last control button check" + ev.getX() + "-" + ev.getY() + "-" + lastControlButton.getControlView().getX() + "-" + lastControlButton.getControlView().getY());
 			if (ev.getX() > lastControlButton.getControlView().getX()
 					&& ev.getX() < lastControlButton.getControlView().getX() + lastControlButton.getControlView().getWidth()
 					&& ev.getY() > lastControlButton.getControlView().getY()
@@ -382,22 +430,17 @@ public class ControlLayout extends FrameLayout {
 		mapTable.remove(v);
 
 		// Update the state of all swipeable buttons
-		for (ControlInterface button : getButtonChildren()) {
-			if (!button.getProperties().isSwipeable) continue;
-
-			if (ev.getX() > button.getControlView().getX()
-					&& ev.getX() < button.getControlView().getX() + button.getControlView().getWidth()
-					&& ev.getY() > button.getControlView().getY()
-					&& ev.getY() < button.getControlView().getY() + button.getControlView().getHeight()) {
-
-				//Press the new key
-				if (!button.equals(lastControlButton)) {
-					button.sendKeyPresses(true);
-					mapTable.put(v, button);
-					return;
-				}
-
-			}
+		// Buttons move all the time while editing, so the grid would be rebuilt on every event anyway
+		if (mModifiable) invalidateHitGrid();
+		rebuildHitGridIfNeeded();
+		int buttonIndex = mHitGrid.findButtonAt(ev.getX(), ev.getY());
+		if (buttonIndex == -1) return;
+		ControlInterface button = mSwipeableButtons.get(buttonIndex);
+
+		//Press the new key
+		if (!button.equals(lastControlButton)) {
+			button.sendKeyPresses(true);
+			mapTable.put(v, button);
 		}
 	}
 
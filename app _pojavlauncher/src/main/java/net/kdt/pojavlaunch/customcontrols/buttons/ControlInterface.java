@@ -72,6 +72,15 @@ public interface ControlInterface extends View.OnLongClickListener, GrabListener
         return (ControlLayout) getControlView().getParent();
     }
 
+    /**
+     * Let the parent layout know that the bounds of this control changed, so that touches are
+     * matched against the new bounds.
+     */
+    default void notifyBoundsChanged() {
+        ControlLayout layout = getControlLayoutParent();
+        if (layout != null) layout.invalidateHitGrid();
+    }
+
     /**
      * Apply conversion steps for when the view is created
      */
@@ -96,6 +105,7 @@ public interface ControlInterface extends View.OnLongClickListener, GrabListener
         if (changePos) {
             getControlView().setX(properties.insertDynamicPos(getProperties().dynamicX));
             getControlView().setY(properties.insertDynamicPos(getProperties().dynamicY));
+            notifyBoundsChanged();
         }
 
         // Recycle layout params
@@ -129,6 +139,7 @@ public interface ControlInterface extends View.OnLongClickListener, GrabListener
     default void setDynamicX(String dynamicX) {
         getProperties().dynamicX = dynamicX;
         getControlView().setX(getProperties().insertDynamicPos(dynamicX));
+        notifyBoundsChanged();
     }
 
     /**
@@ -139,6 +150,7 @@ public interface ControlInterface extends View.OnLongClickListener, GrabListener
     default void setDynamicY(String dynamicY) {
         getProperties().dynamicY = dynamicY;
         getControlView().setY(getProperties().insertDynamicPos(dynamicY));
+        notifyBoundsChanged();
     }
 
     /**
@@ -242,6 +254,7 @@ public interface ControlInterface extends View.OnLongClickListener, GrabListener
 
         getControlView().setX(x);
         getControlView().setY(y);
+        notifyBoundsChanged();
 
         for (ControlInterface button : ((ControlLayout) getControlView().getParent()).getButtonChildren()) {
             //Step 1: Filter unwanted buttons
@@ -391,6 +404,7 @@ public interface ControlInterface extends View.OnLongClickListener, GrabListener
             // Re-calculate position
             getControlView().setX(getControlView().getX());
             getControlView().setY(getControlView().getY());
+            notifyBoundsChanged();
         });
     }
 
@@ -83,7 +83,9 @@ public class Gamepad implements GrabListener, GamepadHandler {
 
     /* Listen for change in gui scale */
     @SuppressWarnings("FieldCanBeLocal") //the field is used in a WeakReference
-    private final MCOptionUtils.MCOptionListener mGuiScaleListener = () -> notifyGUISizeChange(getMcScale());
+    private final MCOptionUtils.MCOptionListener mGuiScaleListener = changedKeys -> {
+        if(changedKeys.contains("guiScale")) notifyGUISizeChange(getMcScale());
+    };
 
     private final GamepadDataProvider mMapProvider;
 
@@ -19,6 +19,8 @@ import net.kdt.pojavlaunch.utils.MathUtils;
 
 import org.lwjgl.glfw.CallbackBridge;
 
+import java.util.Set;
+
 public class HotbarView extends View implements MCOptionUtils.MCOptionListener, View.OnLayoutChangeListener, Runnable {
     private final TapDetector mDoubleTapDetector = new TapDetector(2, TapDetector.DETECTION_METHOD_DOWN);
     private View mParentView;
@@ -148,8 +150,8 @@ public class HotbarView extends View implements MCOptionUtils.MCOptionListener,
     }
 
     @Override
-    public void onOptionChanged() {
-        post(this);
+    public void onOptionChanged(Set<String> changedKeys) {
+        if(changedKeys.contains("guiScale")) post(this);
     }
 
     @Override
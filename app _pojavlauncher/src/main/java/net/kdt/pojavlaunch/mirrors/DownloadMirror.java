@@ -37,15 +37,47 @@ public class DownloadMirror {
      */
     public static void downloadFileMirrored(int downloadClass, String urlInput, File outputFile,
                                             @Nullable byte[] buffer, Tools.DownloaderFeedback monitor) throws IOException {
+        downloadFileMirrored(downloadClass, urlInput, outputFile, buffer, monitor, null);
+    }
+
+    /**
+     * Download a file with the current mirror. If the file is missing on the mirror,
+     * fall back to the official source.
+     * @param downloadClass Class of the download. Can either be DOWNLOAD_CLASS_LIBRARIES,
+     *                      DOWNLOAD_CLASS_METADATA or DOWNLOAD_CLASS_ASSETS
+     * @param urlInput The original (Mojang) URL for the download
+     * @param outputFile The output file for the download
+     * @param buffer The shared buffer
+     * @param monitor The download monitor.
+     * @param resultListener The listener that gets the result of every request, with the URL that
+     *                       was actually requested. Only connection failures and server errors are
+     *                       reported as failures, since missing files don't mean the host is failing.
+     */
+    public static void downloadFileMirrored(int downloadClass, String urlInput, File outputFile,
+                                            @Nullable byte[] buffer, Tools.DownloaderFeedback monitor,
+                                            @Nullable RequestResultListener resultListener) throws IOException {
         try {
-            DownloadUtils.downloadFileMonitored(getMirrorMapping(downloadClass, urlInput),
-                    outputFile, buffer, monitor);
+            downloadFileReporting(getMirrorMapping(downloadClass, urlInput),
+                    outputFile, buffer, monitor, resultListener);
             return;
         }catch (FileNotFoundException e) {
             Log.w("DownloadMirror", "Cannot find the file on the mirror", e);
             Log.i("DownloadMirror", "Falling back to default source");
         }
-        DownloadUtils.downloadFileMonitored(urlInput, outputFile, buffer, monitor);
+        downloadFileReporting(urlInput, outputFile, buffer, monitor, resultListener);
+    }
+
+    private static void downloadFileReporting(String url, File outputFile, @Nullable byte[] buffer,
+                                              Tools.DownloaderFeedback monitor,
+                                              @Nullable RequestResultListener resultListener) throws IOException {
+        try {
+            DownloadUtils.downloadFileMonitored(url, outputFile, buffer, monitor);
+        }catch (IOException e) {
+            // A missing or refused file doesn't mean that the host is failing
+            if(resultListener != null && DownloadUtils.isServerFailure(e)) resultListener.onRequestResult(url, false);
+            throw e;
+        }
+        if(resultListener != null) resultListener.onRequestResult(url, true);
     }
 
     /**
@@ -157,4 +189,8 @@ public class DownloadMirror {
         if(hostnameEnd == -1) hostnameEnd = wholeUrl.length();
         return hostnameEnd;
     }
+
+    public interface RequestResultListener {
+        void onRequestResult(String url, boolean successful);
+    }
 }
@@ -232,8 +232,9 @@ public class ModItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         public void setStateLimited(ModItem item) {
             mModDetail = null;
             if(mThumbnailBitmap != null) {
+                // The bitmap belongs to the icon cache, it must not be recycled here
                 mIconView.setImageBitmap(null);
-                mThumbnailBitmap.recycle();
+                mThumbnailBitmap = null;
             }
             if(mImageReceiver != null) {
                 mIconCache.cancelImage(mImageReceiver);
@@ -3,8 +3,6 @@ package net.kdt.pojavlaunch.modloaders.modpacks.api;
 import android.util.ArrayMap;
 import android.util.Log;
 
-import com.google.gson.Gson;
-
 import net.kdt.pojavlaunch.Tools;
 
 import java.io.IOException;
@@ -59,8 +57,7 @@ public class ApiHandler {
     public static String getRaw(Map<String, String> headers, String url) {
         Log.d("ApiHandler", url);
         try {
-            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-            addHeaders(conn, headers);
+            HttpURLConnection conn = openGetConnection(headers, url);
             InputStream inputStream = conn.getInputStream();
             String data = Tools.read(inputStream);
             Log.d(ApiHandler.class.toString(), data);
@@ -79,18 +76,7 @@ public class ApiHandler {
 
     public static String postRaw(Map<String, String> headers, String url, String body) {
         try {
-            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Accept", "application/json");
-            addHeaders(conn, headers);
-            conn.setDoOutput(true);
-
-            OutputStream outputStream = conn.getOutputStream();
-            byte[] input = body.getBytes(StandardCharsets.UTF_8);
-            outputStream.write(input, 0, input.length);
-            outputStream.close();
-
+            HttpURLConnection conn = openPostConnection(headers, url, body);
             InputStream inputStream = conn.getInputStream();
             String data = Tools.read(inputStream);
             inputStream.close();
@@ -103,6 +89,43 @@ public class ApiHandler {
         return null;
     }
 
+    private static HttpURLConnection openGetConnection(Map<String, String> headers, String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        addHeaders(conn, headers);
+        return conn;
+    }
+
+    private static HttpURLConnection openPostConnection(Map<String, String> headers, String url, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/json");
+        conn.setRequestProperty("Accept", "application/json");
+        addHeaders(conn, headers);
+        conn.setDoOutput(true);
+
+        OutputStream outputStream = conn.getOutputStream();
+        byte[] input = body.getBytes(StandardCharsets.UTF_8);
+        outputStream.write(input, 0, input.length);
+        outputStream.close();
+        return conn;
+    }
+
+    /**
+     * Decode the response of a connection directly from the response stream, instead of reading
+     * it into a String first.
+     * @param conn the connection to read the response from
+     * @param tClass the class of the resulting object
+     * @return the decoded object, or null if the request or the read failed
+     */
+    private static <T> T readJsonResponse(HttpURLConnection conn, Class<T> tClass) {
+        try {
+            return Tools.readJson(conn.getInputStream(), tClass);
+        }catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     private static void addHeaders(HttpURLConnection connection, Map<String, String> headers) {
         if(headers != null) {
             for(String key : headers.keySet())
@@ -139,7 +162,13 @@ public class ApiHandler {
     }
 
     public static <T> T getFullUrl(Map<String, String> headers, String url, Class<T> tClass) {
-        return new Gson().fromJson(getRaw(headers, url), tClass);
+        Log.d("ApiHandler", url);
+        try {
+            return readJsonResponse(openGetConnection(headers, url), tClass);
+        }catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     public static <T> T getFullUrl(Map<String, String> headers, String url, HashMap<String, Object> query, Class<T> tClass) {
@@ -147,11 +176,16 @@ public class ApiHandler {
     }
 
     public static <T> T postFullUrl(Map<String, String> headers, String url, T body, Class<T> tClass) {
-        return new Gson().fromJson(postRaw(headers, url, body.toString()), tClass);
+        try {
+            return readJsonResponse(openPostConnection(headers, url, body.toString()), tClass);
+        }catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     public static <T> T postFullUrl(Map<String, String> headers, String url, HashMap<String, Object> query, T body, Class<T> tClass) {
-        return new Gson().fromJson(postRaw(headers, url + parseQueries(query), body.toString()), tClass);
+        return postFullUrl(headers, url + parseQueries(query), body, tClass);
     }
 
     private static String urlEncodeUTF8(String input) {
@@ -43,6 +43,7 @@ public class CurseforgeApi implements ModpackApi{
     private static final int CURSEFORGE_PAGINATION_SIZE = 50;
     private static final int CURSEFORGE_PAGINATION_END_REACHED = -1;
     private static final int CURSEFORGE_PAGINATION_ERROR = -2;
+    private static final int CURSEFORGE_BULK_FILES_CHUNK_SIZE = 50;
 
     private final ApiHandler mApiHandler;
     public CurseforgeApi(String apiKey) {
@@ -160,17 +161,26 @@ public class CurseforgeApi implements ModpackApi{
 
     private ModLoader installCurseforgeZip(File zipFile, File instanceDestination) throws IOException {
         try (ZipFile modpackZipFile = new ZipFile(zipFile)){
-            CurseManifest curseManifest = Tools.GLOBAL_GSON.fromJson(
-                    Tools.read(ZipUtils.getEntryStream(modpackZipFile, "manifest.json")),
+            CurseManifest curseManifest = Tools.readJson(
+                    ZipUtils.getEntryStream(modpackZipFile, "manifest.json"),
                     CurseManifest.class);
             if(!verifyManifest(curseManifest)) {
                 Log.i("CurseforgeApi","manifest verification failed");
                 return null;
             }
+            HashMap<Long, JsonObject> resolvedFiles = resolveFilesInBulk(curseManifest.files);
             ModDownloader modDownloader = new ModDownloader(new File(instanceDestination,"mods"), true);
             int fileCount = curseManifest.files.length;
             for(int i = 0; i < fileCount; i++) {
                 final CurseManifest.CurseFile curseFile = curseManifest.files[i];
+                JsonObject resolvedFile = resolvedFiles.get(curseFile.fileID);
+                if(resolvedFile != null) {
+                    String url = getDownloadUrlFromModData(resolvedFile);
+                    modDownloader.submitDownload(GsonJsonUtils.getIntSafe(resolvedFile, "fileLength", 0),
+                            FileUtils.getFileName(url), getSha1FromModData(resolvedFile), url);
+                    continue;
+                }
+                // Not returned by the bulk endpoint, resolve it separately
                 modDownloader.submitDownload(()->{
                     String url = getDownloadUrl(curseFile.projectID, curseFile.fileID);
                     if(url == null && curseFile.required)
@@ -218,6 +228,44 @@ public class CurseforgeApi implements ModpackApi{
         return new ModLoader(modLoaderTypeInt, modLoaderVersion, minecraft.version);
     }
 
+    /**
+     * Get the data (including the download URL, size and hashes) of multiple files at once from the
+     * bulk files endpoint, instead of doing multiple requests for every file.
+     * @param files the files from the modpack manifest
+     * @return the file data objects keyed by file ID. Files that failed to resolve are not included.
+     */
+    private HashMap<Long, JsonObject> resolveFilesInBulk(CurseManifest.CurseFile[] files) {
+        HashMap<Long, JsonObject> resolvedFiles = new HashMap<>(files.length);
+        for(int chunkStart = 0; chunkStart < files.length; chunkStart += CURSEFORGE_BULK_FILES_CHUNK_SIZE) {
+            ProgressKeeper.submitProgress(ProgressLayout.INSTALL_MODPACK, chunkStart * 100 / files.length,
+                    R.string.modpack_download_resolving_mods, chunkStart, files.length);
+            int chunkEnd = Math.min(files.length, chunkStart + CURSEFORGE_BULK_FILES_CHUNK_SIZE);
+            JsonArray fileIds = new JsonArray(chunkEnd - chunkStart);
+            for(int i = chunkStart; i < chunkEnd; i++) fileIds.add(files[i].fileID);
+            JsonObject requestBody = new JsonObject();
+            requestBody.add("fileIds", fileIds);
+
+            JsonObject response = mApiHandler.post("mods/files", requestBody, JsonObject.class);
+            JsonArray data = GsonJsonUtils.getJsonArraySafe(response, "data");
+            if(data == null) continue;
+            for(JsonElement element : data) {
+                JsonObject fileData = GsonJsonUtils.getJsonObjectSafe(element);
+                if(fileData == null || GsonJsonUtils.getElementSafe(fileData, "id") == null) continue;
+                resolvedFiles.put(fileData.get("id").getAsLong(), fileData);
+            }
+        }
+        Log.i("CurseforgeApi", "Resolved "+resolvedFiles.size()+" out of "+files.length+" files in bulk");
+        return resolvedFiles;
+    }
+
+    private String getDownloadUrlFromModData(@NonNull JsonObject modData) {
+        JsonElement downloadUrl = modData.get("downloadUrl");
+        if(downloadUrl != null && !downloadUrl.isJsonNull()) return downloadUrl.getAsString();
+        // The mod author disabled third party downloads, build an edge link instead
+        int id = modData.get("id").getAsInt();
+        return String.format("https://edge.forgecdn.net/files/%s/%s/%s", id/1000, id % 1000, modData.get("fileName").getAsString());
+    }
+
     private String getDownloadUrl(long projectID, long fileID) {
         // First try the official api endpoint
         JsonObject response = mApiHandler.get("mods/"+projectID+"/files/"+fileID+"/download-url", JsonObject.class);
@@ -227,9 +275,7 @@ public class CurseforgeApi implements ModpackApi{
         // Otherwise, fallback to building an edge link
         JsonObject fallbackResponse = mApiHandler.get(String.format("mods/%s/files/%s", projectID, fileID), JsonObject.class);
         if (fallbackResponse != null && !fallbackResponse.get("data").isJsonNull()){
-            JsonObject modData = fallbackResponse.get("data").getAsJsonObject();
-            int id = modData.get("id").getAsInt();
-            return String.format("https://edge.forgecdn.net/files/%s/%s/%s", id/1000, id % 1000, modData.get("fileName").getAsString());
+            return getDownloadUrlFromModData(fallbackResponse.get("data").getAsJsonObject());
         }
 
         return null;
@@ -1,15 +1,19 @@
 package net.kdt.pojavlaunch.modloaders.modpacks.api;
 
+import android.util.Log;
+
 import androidx.annotation.Nullable;
 
 import net.kdt.pojavlaunch.Tools;
+import net.kdt.pojavlaunch.tasks.DownloadScheduler;
+import net.kdt.pojavlaunch.tasks.SpeedCalculator;
+import net.kdt.pojavlaunch.utils.BlobStore;
 import net.kdt.pojavlaunch.utils.DownloadUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -17,8 +21,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public class ModDownloader {
     private static final ThreadLocal<byte[]> sThreadLocalBuffer = new ThreadLocal<>();
-    private final ThreadPoolExecutor mDownloadPool = new ThreadPoolExecutor(4,4,100, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>());
+    private final DownloadScheduler mDownloadPool = new DownloadScheduler();
     private final AtomicBoolean mTerminator = new AtomicBoolean(false);
     private final AtomicLong mDownloadSize = new AtomicLong(0);
     private final Object mExceptionSyncPoint = new Object();
@@ -40,20 +43,25 @@ public class ModDownloader {
     public void submitDownload(int fileSize, String relativePath, @Nullable String downloadHash, String... url) {
         if(mUseFileCount) mTotalSize += 1;
         else mTotalSize += fileSize;
-        mDownloadPool.execute(new DownloadTask(url, new File(mDestinationDirectory, relativePath), downloadHash));
+        mDownloadPool.execute(new DownloadTask(url, new File(mDestinationDirectory, relativePath), downloadHash), fileSize);
     }
 
     public void submitDownload(FileInfoProvider infoProvider) {
         if(!mUseFileCount) throw new RuntimeException("This method can only be used in a file-counting ModDownloader");
         mTotalSize += 1;
-        mDownloadPool.execute(new FileInfoQueryTask(infoProvider));
+        // The size is not known until the query finishes
+        mDownloadPool.execute(new FileInfoQueryTask(infoProvider), 0);
     }
 
     public void awaitFinish(Tools.DownloaderFeedback feedback) throws IOException {
         try {
             mDownloadPool.shutdown();
+            SpeedCalculator speedCalculator = new SpeedCalculator();
             while(!mDownloadPool.awaitTermination(20, TimeUnit.MILLISECONDS) && !mTerminator.get()) {
-                feedback.updateProgress((int) mDownloadSize.get(), (int) mTotalSize);
+                long downloadSize = mDownloadSize.get();
+                // In file counting mode, the throughput is measured in files per second
+                mDownloadPool.feedThroughput(speedCalculator.feed(downloadSize));
+                feedback.updateProgress((int) downloadSize, (int) mTotalSize);
             }
             if(mTerminator.get()) {
                 mDownloadPool.shutdownNow();
@@ -62,6 +70,7 @@ public class ModDownloader {
                     throw mFirstIOException;
                 }
             }
+            BlobStore.collectGarbageIfDue();
         }catch (InterruptedException e) {
             e.printStackTrace();
         }
@@ -118,6 +127,8 @@ public class ModDownloader {
 
         @Override
         public void run() {
+            if(restoreFromStore()) return;
+            boolean failed = false;
             for(String sourceUrl : mDownloadUrls) {
                 try {
                     DownloadUtils.ensureSha1(mDestination, mSha1, (Callable<Void>) () -> {
@@ -129,9 +140,31 @@ public class ModDownloader {
                     });
 
                 }catch (IOException e) {
+                    failed = true;
                     downloadFailed(e);
                 }
             }
+            // ensureSha1 verified the file, so it can be shared with other instances
+            if(!failed) BlobStore.store(mSha1, mDestination);
+        }
+
+        /**
+         * Try to get the file from the shared blob store instead of downloading it.
+         * @return true if the file was restored and matches the hash, false otherwise
+         */
+        private boolean restoreFromStore() {
+            if(mSha1 == null || !BlobStore.restore(mSha1, mDestination)) return false;
+            if(!Tools.compareSHA1(mDestination, mSha1)) {
+                // The stored copy got damaged somehow, so remove it and download the file normally
+                Log.w("ModDownloader", "Stored copy of "+mDestination.getName()+" is damaged");
+                //noinspection ResultOfMethodCallIgnored
+                mDestination.delete();
+                // Otherwise the damaged copy would stay in the store instead of the downloaded one
+                BlobStore.discard(mSha1);
+                return false;
+            }
+            mDownloadSize.addAndGet(mUseFileCount ? 1 : mDestination.length());
+            return true;
         }
 
         private IOException tryDownload(String sourceUrl) throws InterruptedException {
@@ -139,12 +172,15 @@ public class ModDownloader {
             for (int i = 0; i < 5; i++) {
                 try {
                     DownloadUtils.downloadFileMonitored(sourceUrl, mDestination, getThreadLocalBuffer(), this);
+                    mDownloadPool.reportResult(sourceUrl, true);
                     if(mUseFileCount) mDownloadSize.addAndGet(1);
                     return null;
                 } catch (InterruptedIOException e) {
                     throw new InterruptedException();
                 } catch (IOException e) {
                     e.printStackTrace();
+                    // A single missing file must not slow down the whole install
+                    if(DownloadUtils.isServerFailure(e)) mDownloadPool.reportResult(sourceUrl, false);
                     exception = e;
                 }
                 if(!mUseFileCount) {
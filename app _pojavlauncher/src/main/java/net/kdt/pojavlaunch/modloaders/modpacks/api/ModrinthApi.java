@@ -136,8 +136,8 @@ public class ModrinthApi implements ModpackApi{
 
     private ModLoader installMrpack(File mrpackFile, File instanceDestination) throws IOException {
         try (ZipFile modpackZipFile = new ZipFile(mrpackFile)){
-            ModrinthIndex modrinthIndex = Tools.GLOBAL_GSON.fromJson(
-                    Tools.read(ZipUtils.getEntryStream(modpackZipFile, "modrinth.index.json")),
+            ModrinthIndex modrinthIndex = Tools.readJson(
+                    ZipUtils.getEntryStream(modpackZipFile, "modrinth.index.json"),
                     ModrinthIndex.class);
             
             ModDownloader modDownloader = new ModDownloader(instanceDestination);
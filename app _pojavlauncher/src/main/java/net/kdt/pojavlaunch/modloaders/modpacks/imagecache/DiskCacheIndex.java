@@ -0,0 +1,58 @@
+package net.kdt.pojavlaunch.modloaders.modpacks.imagecache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the files of a disk cache in the order they were last accessed in,
+ * along with their total size, so that eviction always picks the least recently used files.
+ * Doesn't touch the disk itself, so that its behaviour can be checked on a plain JVM.
+ */
+public class DiskCacheIndex {
+    // Access-ordered, so the first entry is always the least recently used file
+    private final LinkedHashMap<String, Long> mFileSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long mTotalSize;
+
+    /**
+     * Record that a file was written or read, making it the most recently used one
+     * @param fileName the name of the file
+     * @param fileSize the current size of the file
+     */
+    public synchronized void recordAccess(String fileName, long fileSize) {
+        Long previousSize = mFileSizes.put(fileName, fileSize);
+        if(previousSize != null) mTotalSize -= previousSize;
+        mTotalSize += fileSize;
+    }
+
+    /**
+     * Forget about a file
+     * @param fileName the name of the file
+     */
+    public synchronized void remove(String fileName) {
+        Long previousSize = mFileSizes.remove(fileName);
+        if(previousSize != null) mTotalSize -= previousSize;
+    }
+
+    public synchronized long getTotalSize() {
+        return mTotalSize;
+    }
+
+    /**
+     * Pick the files to evict to bring the cache down to a target size. The files are not
+     * removed from the index, call {@link #remove(String)} once they are actually deleted.
+     * @param targetSize the size the cache should be brought down to
+     * @return the names of the files to evict, least recently used first
+     */
+    public synchronized List<String> getEvictionCandidates(long targetSize) {
+        List<String> candidates = new ArrayList<>();
+        long remainingSize = mTotalSize;
+        for(Map.Entry<String, Long> entry : mFileSizes.entrySet()) {
+            if(remainingSize <= targetSize) break;
+            candidates.add(entry.getKey());
+            remainingSize -= entry.getValue();
+        }
+        return candidates;
+    }
+}
@@ -20,13 +20,14 @@ class DownloadImageTask implements Runnable {
     @Override
     public void run() {
         boolean wasSuccessful = false;
-        while(mRetryCount < 5 && !(wasSuccessful = runCatching())) {
+        while(mRetryCount < 5 && !mParentTask.taskCancelled() && !(wasSuccessful = runCatching())) {
             mRetryCount++;
         }
         // restart the parent task to read the image and send it to the receiver
         // if it wasn't cancelled. If it was, then we just die here
-        if(wasSuccessful && !mParentTask.taskCancelled())
-            mParentTask.iconCache.cacheLoaderPool.execute(mParentTask);
+        if(mParentTask.taskCancelled()) return;
+        if(wasSuccessful) mParentTask.iconCache.submitTask(mParentTask.request, mParentTask);
+        else mParentTask.iconCache.failRequest(mParentTask.request);
     }
 
     public boolean runCatching() {
@@ -38,6 +39,7 @@ class DownloadImageTask implements Runnable {
             int bitmapWidth = bitmap.getWidth(), bitmapHeight = bitmap.getHeight();
             if(bitmapWidth <= BITMAP_FINAL_DIMENSION && bitmapHeight <= BITMAP_FINAL_DIMENSION) {
                 bitmap.recycle();
+                IconCacheJanitor.onFileWritten(mParentTask.cacheFile);
                 return true;
             }
             float imageRescaleRatio = Math.min(BITMAP_FINAL_DIMENSION/bitmapWidth, BITMAP_FINAL_DIMENSION/bitmapHeight);
@@ -46,12 +48,16 @@ class DownloadImageTask implements Runnable {
                     (int)(bitmapHeight * imageRescaleRatio),
                     true);
             bitmap.recycle();
-            if(resizedBitmap == bitmap) return true;
+            if(resizedBitmap == bitmap) {
+                IconCacheJanitor.onFileWritten(mParentTask.cacheFile);
+                return true;
+            }
             try (FileOutputStream fileOutputStream = new FileOutputStream(mParentTask.cacheFile)) {
                 resizedBitmap.compress(Bitmap.CompressFormat.JPEG, 80, fileOutputStream);
             } finally {
                 resizedBitmap.recycle();
             }
+            IconCacheJanitor.onFileWritten(mParentTask.cacheFile);
             return true;
         }catch (IOException e) {
             e.printStackTrace();
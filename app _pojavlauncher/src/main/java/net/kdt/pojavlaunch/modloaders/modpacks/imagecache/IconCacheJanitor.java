@@ -5,66 +5,93 @@ import android.util.Log;
 import net.kdt.pojavlaunch.PojavApplication;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 /**
  * This image is intended to keep the mod icon cache tidy (aka under 100 megabytes)
+ * The files are tracked in a DiskCacheIndex, in the order they were last used in. The index is
+ * built from the modification times of the files on the first run, and the modification time
+ * of a file is updated each time it is read, so that the order survives restarts.
  */
 public class IconCacheJanitor implements Runnable{
     public static final long CACHE_SIZE_LIMIT = 104857600; // The cache size limit, 100 megabytes
     public static final long CACHE_BRINGDOWN = 52428800; // The size to which the cache should be brought
     // in case of an overflow, 50 mb
+    private static final DiskCacheIndex sCacheIndex = new DiskCacheIndex();
     private static Future<?> sJanitorFuture;
-    private static boolean sJanitorRan = false;
+    private static boolean sIndexBuilt = false;
     private IconCacheJanitor() {
         // don't allow others to create this
     }
     @Override
     public void run() {
         File modIconCachePath = ModIconCache.getImageCachePath();
-        if(!modIconCachePath.isDirectory() || !modIconCachePath.canRead()) return;
+        try {
+            if(!modIconCachePath.isDirectory() || !modIconCachePath.canRead()) return;
+            if(!sIndexBuilt) {
+                buildIndex(modIconCachePath);
+                sIndexBuilt = true;
+            }
+            if(sCacheIndex.getTotalSize() < CACHE_SIZE_LIMIT)  {
+                Log.i("IconCacheJanitor", "Skipping cleanup because there's not enough to clean up");
+                return;
+            }
+            int filesCleanedUp = 0;
+            for(String fileName : sCacheIndex.getEvictionCandidates(CACHE_BRINGDOWN)) {
+                File modFile = new File(modIconCachePath, fileName);
+                if(modFile.delete() || !modFile.exists()) {
+                    sCacheIndex.remove(fileName);
+                    filesCleanedUp++;
+                }
+            }
+            Log.i("IconCacheJanitor", "Cleaned up "+filesCleanedUp+ " files");
+        } finally {
+            synchronized (IconCacheJanitor.class) {
+                sJanitorFuture = null;
+            }
+        }
+    }
+
+    private static void buildIndex(File modIconCachePath) {
         File[] modIconFiles = modIconCachePath.listFiles();
         if(modIconFiles == null) return;
-        ArrayList<File> writableModIconFiles = new ArrayList<>(modIconFiles.length);
-        long directoryFileSize = 0;
-        for(File modIconFile : modIconFiles) {
-            if(!modIconFile.isFile() || !modIconFile.canRead()) continue;
-            directoryFileSize += modIconFile.length();
-            if(!modIconFile.canWrite()) continue;
-            writableModIconFiles.add(modIconFile);
-        }
-        if(directoryFileSize < CACHE_SIZE_LIMIT)  {
-            Log.i("IconCacheJanitor", "Skipping cleanup because there's not enough to clean up");
-            return;
-        }
+        // Oldest first, so that the least recently used file ends up at the start of the index
         Arrays.sort(modIconFiles,
-                (x,y)-> Long.compare(y.lastModified(), x.lastModified())
+                (x,y)-> Long.compare(x.lastModified(), y.lastModified())
         );
-        int filesCleanedUp = 0;
-        for(File modFile : writableModIconFiles) {
-            if(directoryFileSize < CACHE_BRINGDOWN) break;
-            long modFileSize = modFile.length();
-            if(modFile.delete()) {
-                directoryFileSize -= modFileSize;
-                filesCleanedUp++;
-            }
-        }
-        Log.i("IconCacheJanitor", "Cleaned up "+filesCleanedUp+ " files");
-        synchronized (IconCacheJanitor.class) {
-            sJanitorFuture = null;
-            sJanitorRan = true;
+        for(File modIconFile : modIconFiles) {
+            if(!modIconFile.isFile() || !modIconFile.canWrite()) continue;
+            sCacheIndex.recordAccess(modIconFile.getName(), modIconFile.length());
         }
     }
 
     /**
-     * Runs the janitor task, unless there was one running already or one has ran already
+     * Record that a cached icon was read, so that it is evicted after the icons that weren't used since
+     * @param cacheFile the cached icon file
+     */
+    static void onFileRead(File cacheFile) {
+        //noinspection ResultOfMethodCallIgnored
+        cacheFile.setLastModified(System.currentTimeMillis());
+        sCacheIndex.recordAccess(cacheFile.getName(), cacheFile.length());
+    }
+
+    /**
+     * Record that an icon was written into the cache, and clean the cache up if it got too big
+     * @param cacheFile the cached icon file
+     */
+    static void onFileWritten(File cacheFile) {
+        sCacheIndex.recordAccess(cacheFile.getName(), cacheFile.length());
+        if(sCacheIndex.getTotalSize() >= CACHE_SIZE_LIMIT) runJanitor();
+    }
+
+    /**
+     * Runs the janitor task, unless there was one running already
      */
     public static void runJanitor() {
         synchronized (IconCacheJanitor.class) {
-            if (sJanitorFuture != null || sJanitorRan) return;
+            if (sJanitorFuture != null) return;
             sJanitorFuture = PojavApplication.sExecutorService.submit(new IconCacheJanitor());
         }
     }
@@ -74,13 +101,16 @@ public class IconCacheJanitor implements Runnable{
      * Note that the thread waiting must not be interrupted.
      */
     public static void waitForJanitorToFinish() {
+        Future<?> janitorFuture;
         synchronized (IconCacheJanitor.class) {
-            if (sJanitorFuture == null) return;
-            try {
-                sJanitorFuture.get();
-            } catch (ExecutionException | InterruptedException e) {
-                throw new RuntimeException("Should not happen!", e);
-            }
+            janitorFuture = sJanitorFuture;
+        }
+        // Wait outside of the lock, the janitor needs it to finish
+        if (janitorFuture == null) return;
+        try {
+            janitorFuture.get();
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException("Should not happen!", e);
         }
     }
 }
@@ -0,0 +1,80 @@
+package net.kdt.pojavlaunch.modloaders.modpacks.imagecache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * An in-flight request for an icon. All the receivers that asked for the same icon while it was
+ * loading wait on the same request, so that the icon is only read and downloaded once.
+ * Once a request is finished (loaded, failed or cancelled), no more receivers can join it.
+ */
+class IconRequest {
+    final String iconTag;
+    private final Set<ImageReceiver> mReceivers = new HashSet<>();
+    private boolean mFinished;
+    private volatile boolean mCancelled;
+    private volatile Future<?> mFuture;
+
+    IconRequest(String iconTag) {
+        this.iconTag = iconTag;
+    }
+
+    /**
+     * Make a receiver wait for this request
+     * @param imageReceiver the receiver
+     * @return false if the request is already finished, and a new one must be made
+     */
+    synchronized boolean addReceiver(ImageReceiver imageReceiver) {
+        if(mFinished) return false;
+        mReceivers.add(imageReceiver);
+        return true;
+    }
+
+    /**
+     * Stop a receiver from waiting for this request. When no receivers are left, the request
+     * gets cancelled, and its task is dropped if it didn't start yet.
+     * @param imageReceiver the receiver
+     * @return true if the request got cancelled
+     */
+    synchronized boolean removeReceiver(ImageReceiver imageReceiver) {
+        mReceivers.remove(imageReceiver);
+        if(mFinished || !mReceivers.isEmpty()) return false;
+        mFinished = true;
+        mCancelled = true;
+        Future<?> future = mFuture;
+        if(future != null) future.cancel(false);
+        return true;
+    }
+
+    /**
+     * Finish the request
+     * @return the receivers that were waiting for it
+     */
+    synchronized List<ImageReceiver> finish() {
+        mFinished = true;
+        List<ImageReceiver> receivers = new ArrayList<>(mReceivers);
+        mReceivers.clear();
+        return receivers;
+    }
+
+    /**
+     * Set the future of the next task of this request, so that it can be cancelled.
+     * Must be called before the task is queued.
+     * @param future the future of the task
+     * @return false if the request is already cancelled, and the task must not be queued
+     */
+    boolean setFuture(Future<?> future) {
+        mFuture = future;
+        // The request might have been cancelled while the future was being set
+        if(!mCancelled) return true;
+        future.cancel(false);
+        return false;
+    }
+
+    boolean isCancelled() {
+        return mCancelled;
+    }
+}
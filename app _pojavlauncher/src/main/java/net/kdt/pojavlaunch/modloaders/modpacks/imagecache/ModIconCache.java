@@ -1,5 +1,6 @@
 package net.kdt.pojavlaunch.modloaders.modpacks.imagecache;
 
+import android.graphics.Bitmap;
 import android.util.Base64;
 import android.util.Log;
 
@@ -10,22 +11,32 @@ import org.apache.commons.io.IOUtils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class ModIconCache {
+    private static final long MEMORY_CACHE_SIZE = Math.min(Runtime.getRuntime().maxMemory() / 16, 32 * 1024 * 1024);
+    /* Decoded icons, shared by every ModIconCache. Bitmaps in this cache must never be recycled */
+    static final SizedLruCache<String, Bitmap> sMemoryCache = new SizedLruCache<String, Bitmap>(MEMORY_CACHE_SIZE) {
+        @Override
+        protected long sizeOf(Bitmap value) {
+            return value.getByteCount();
+        }
+    };
     ThreadPoolExecutor cacheLoaderPool = new ThreadPoolExecutor(10,
             10,
             1000,
             TimeUnit.MILLISECONDS,
             new LinkedBlockingQueue<>());
     File cachePath;
-    private final List<WeakReference<ImageReceiver>> mCancelledReceivers = new ArrayList<>();
+    // The requests that are currently loading, by icon tag
+    private final ConcurrentHashMap<String, IconRequest> mInFlightRequests = new ConcurrentHashMap<>();
+    // The tag that each waiting receiver asked for, so that it can be cancelled without a lookup
+    private final ConcurrentHashMap<ImageReceiver, String> mReceiverTags = new ConcurrentHashMap<>();
     public ModIconCache() {
         cachePath = getImageCachePath();
         if(!cachePath.exists() && !cachePath.isFile() && Tools.DIR_CACHE.canWrite()) {
@@ -40,43 +51,85 @@ public class ModIconCache {
 
     /**
      * Get an image for a mod with the associated tag and URL to download it in case if its not cached
+     * If the image is in memory, the receiver is called right away. The received bitmap is shared,
+     * it must not be recycled. If the image is already being loaded for another receiver, this receiver
+     * waits for the same load instead of starting a new one.
      * @param imageReceiver the receiver interface that would get called when the image loads
      * @param imageTag the tag of the image to keep track of it
      * @param imageUrl the URL of the image in case if it's not cached
      */
     public void getImage(ImageReceiver imageReceiver, String imageTag, String imageUrl) {
-        cacheLoaderPool.execute(new ReadFromDiskTask(this, imageReceiver, imageTag, imageUrl));
+        Bitmap cachedBitmap = sMemoryCache.get(imageTag);
+        if(cachedBitmap != null) {
+            imageReceiver.onImageAvailable(cachedBitmap);
+            return;
+        }
+        mReceiverTags.put(imageReceiver, imageTag);
+        while(true) {
+            IconRequest request = mInFlightRequests.get(imageTag);
+            if(request == null) {
+                request = new IconRequest(imageTag);
+                request.addReceiver(imageReceiver);
+                if(mInFlightRequests.putIfAbsent(imageTag, request) != null) continue;
+                submitTask(request, new ReadFromDiskTask(this, request, imageUrl));
+                return;
+            }
+            if(request.addReceiver(imageReceiver)) return;
+            // The request finished while we were joining it, make way for a new one
+            mInFlightRequests.remove(imageTag, request);
+        }
     }
 
     /**
-     * Mark the image obtainment task requested with this receiver as "cancelled". This means that
-     * this receiver will not be called back and that some tasks related to this image may be
-     * prevented from happening or interrupted.
+     * Cancel the image obtainment requested with this receiver. This means that this receiver will
+     * not be called back. If no other receiver waits for the same image, the tasks related to it
+     * are dropped if they didn't start yet, and stop at the next step if they did.
      * @param imageReceiver the receiver to cancel
      */
     public void cancelImage(ImageReceiver imageReceiver) {
-        synchronized (mCancelledReceivers) {
-            mCancelledReceivers.add(new WeakReference<>(imageReceiver));
+        String imageTag = mReceiverTags.remove(imageReceiver);
+        if(imageTag == null) return;
+        IconRequest request = mInFlightRequests.get(imageTag);
+        if(request != null && request.removeReceiver(imageReceiver)) {
+            mInFlightRequests.remove(imageTag, request);
         }
     }
 
-    boolean checkCancelled(ImageReceiver imageReceiver) {
-        boolean isCanceled = false;
-        synchronized (mCancelledReceivers) {
-            Iterator<WeakReference<ImageReceiver>> iterator = mCancelledReceivers.iterator();
-            while (iterator.hasNext()) {
-                WeakReference<ImageReceiver> reference = iterator.next();
-                if (reference.get() == null) {
-                    iterator.remove();
-                    continue;
-                }
-                if(reference.get() == imageReceiver) {
-                    isCanceled = true;
-                }
+    void submitTask(IconRequest request, Runnable task) {
+        // The future is handed to the request before the task is queued, so that a task that runs
+        // right away and submits the next one can't have its future overwritten by this one
+        FutureTask<Void> future = new FutureTask<>(task, null);
+        if(!request.setFuture(future)) return;
+        cacheLoaderPool.execute(future);
+    }
+
+    /**
+     * Send a loaded image to every receiver waiting for it, on the UI thread
+     * @param request the request that got loaded
+     * @param bitmap the loaded image
+     */
+    void deliverImage(IconRequest request, Bitmap bitmap) {
+        mInFlightRequests.remove(request.iconTag, request);
+        List<ImageReceiver> receivers = request.finish();
+        if(receivers.isEmpty()) return;
+        Tools.runOnUiThread(()->{
+            for(ImageReceiver receiver : receivers) {
+                // Skip the receivers that got cancelled in the meantime
+                if(mReceiverTags.remove(receiver, request.iconTag)) receiver.onImageAvailable(bitmap);
             }
+        });
+    }
+
+    /**
+     * Give up on a request that could not be loaded
+     * @param request the failed request
+     */
+    void failRequest(IconRequest request) {
+        mInFlightRequests.remove(request.iconTag, request);
+        for(ImageReceiver receiver : request.finish()) {
+            mReceiverTags.remove(receiver, request.iconTag);
         }
-        if(isCanceled) Log.i("IconCache", "checkCancelled("+imageReceiver.hashCode()+") == true");
-        return isCanceled;
+        Log.i("IconCache", "Failed to load icon "+request.iconTag);
     }
 
     /**
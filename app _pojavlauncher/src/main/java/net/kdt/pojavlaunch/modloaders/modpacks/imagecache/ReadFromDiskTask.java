@@ -3,53 +3,57 @@ package net.kdt.pojavlaunch.modloaders.modpacks.imagecache;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
-import net.kdt.pojavlaunch.Tools;
-
 import java.io.File;
 
 public class ReadFromDiskTask implements Runnable {
     final ModIconCache iconCache;
-    final ImageReceiver imageReceiver;
+    final IconRequest request;
     final File cacheFile;
+    final String cacheTag;
     final String imageUrl;
 
-    ReadFromDiskTask(ModIconCache iconCache, ImageReceiver imageReceiver, String cacheTag, String imageUrl) {
+    ReadFromDiskTask(ModIconCache iconCache, IconRequest request, String imageUrl) {
         this.iconCache = iconCache;
-        this.imageReceiver = imageReceiver;
+        this.request = request;
+        this.cacheTag = request.iconTag;
         this.cacheFile = new File(iconCache.cachePath, cacheTag+".ca");
         this.imageUrl = imageUrl;
     }
 
     public void runDownloadTask() {
-        iconCache.cacheLoaderPool.execute(new DownloadImageTask(this));
+        iconCache.submitTask(request, new DownloadImageTask(this));
     }
 
     @Override
     public void run() {
+        if(taskCancelled()) return;
         if(cacheFile.isDirectory()) {
+            iconCache.failRequest(request);
             return;
         }
         if(cacheFile.canRead()) {
             IconCacheJanitor.waitForJanitorToFinish();
-            Bitmap bitmap = BitmapFactory.decodeFile(cacheFile.getAbsolutePath());
+            // Another task might have loaded it in the meantime
+            Bitmap bitmap = ModIconCache.sMemoryCache.get(cacheTag);
+            if(bitmap == null) {
+                bitmap = BitmapFactory.decodeFile(cacheFile.getAbsolutePath());
+                if(bitmap != null) {
+                    ModIconCache.sMemoryCache.put(cacheTag, bitmap);
+                    IconCacheJanitor.onFileRead(cacheFile);
+                }
+            }
             if(bitmap != null) {
-                Tools.runOnUiThread(()->{
-                    if(taskCancelled()) {
-                        bitmap.recycle(); // do not leak the bitmap if the task got cancelled right at the end
-                        return;
-                    }
-                    imageReceiver.onImageAvailable(bitmap);
-                });
+                // The bitmap is shared through the memory cache, so it is not recycled if the task got cancelled
+                iconCache.deliverImage(request, bitmap);
                 return;
             }
         }
-        if(iconCache.cachePath.canWrite() &&
-                !taskCancelled()) { // don't run the download task if the task got canceled
-            runDownloadTask();
-        }
+        if(taskCancelled()) return; // don't run the download task if the task got canceled
+        if(iconCache.cachePath.canWrite()) runDownloadTask();
+        else iconCache.failRequest(request);
     }
     @SuppressWarnings("BooleanMethodAlwaysInverted")
     public boolean taskCancelled() {
-        return iconCache.checkCancelled(imageReceiver);
+        return request.isCancelled();
     }
 }
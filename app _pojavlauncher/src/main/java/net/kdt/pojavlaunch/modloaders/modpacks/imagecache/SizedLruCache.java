@@ -0,0 +1,87 @@
+package net.kdt.pojavlaunch.modloaders.modpacks.imagecache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache bounded by the total size of its values rather than their count.
+ * Doesn't depend on Android, so that its behaviour can be checked on a plain JVM.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public abstract class SizedLruCache<K, V> {
+    // Access-ordered, so the first entry is always the least recently used one
+    private final LinkedHashMap<K, V> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxSize;
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * @param maxSize the maximum total size of the values, in the unit of {@link #sizeOf(Object)}
+     */
+    public SizedLruCache(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @param value a value of the cache
+     * @return the size of the value. Must not change while the value is in the cache
+     */
+    protected abstract long sizeOf(V value);
+
+    /**
+     * Get a value, and mark it as the most recently used one
+     * @param key the key of the value
+     * @return the value, or null if it isn't cached
+     */
+    public synchronized V get(K key) {
+        V value = mEntries.get(key);
+        if(value != null) mHitCount++;
+        else mMissCount++;
+        return value;
+    }
+
+    /**
+     * Put a value into the cache, evicting the least recently used values if it gets too big.
+     * Values bigger than the whole cache are not stored.
+     * @param key the key of the value
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        long valueSize = sizeOf(value);
+        if(valueSize > mMaxSize) return;
+        V previousValue = mEntries.put(key, value);
+        if(previousValue != null) mSize -= sizeOf(previousValue);
+        mSize += valueSize;
+        trimToSize(mMaxSize);
+    }
+
+    /** Evict the least recently used values until the total size is at most maxSize */
+    private void trimToSize(long maxSize) {
+        Iterator<Map.Entry<K, V>> iterator = mEntries.entrySet().iterator();
+        while(mSize > maxSize && iterator.hasNext()) {
+            V evictedValue = iterator.next().getValue();
+            iterator.remove();
+            mSize -= sizeOf(evictedValue);
+        }
+    }
+
+    /** Remove all values from the cache */
+    public synchronized void clear() {
+        trimToSize(-1);
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized long hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long missCount() {
+        return mMissCount;
+    }
+}
@@ -18,6 +18,7 @@ import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -27,6 +28,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MultiRTUtils {
 
@@ -35,6 +39,10 @@ public class MultiRTUtils {
     private static final File RUNTIME_FOLDER = new File(Tools.MULTIRT_HOME);
     private static final String JAVA_VERSION_STR = "JAVA_VERSION=\"";
     private static final String OS_ARCH_STR = "OS_ARCH=\"";
+    private static final int COPY_BUFFER_SIZE = 128 * 1024;
+    private static final int READ_AHEAD_CHUNK_SIZE = 256 * 1024;
+    private static final int READ_AHEAD_CHUNK_COUNT = 8;
+    private static final long PROGRESS_INTERVAL_MS = 100;
 
     public static List<Runtime> getRuntimes() {
         if(!RUNTIME_FOLDER.exists() && !RUNTIME_FOLDER.mkdirs()) {
@@ -179,6 +187,7 @@ public class MultiRTUtils {
 
     /**
      * Unpacks all .pack files into .jar Serves only for java 8, as java 9 brought project jigsaw
+     * The files are independent from each other, so they are unpacked in parallel.
      * @param nativeLibraryDir The native lib path, required to execute the unpack200 binary
      * @param runtimePath The path to the runtime to walk into
      */
@@ -186,17 +195,31 @@ public class MultiRTUtils {
 
         File basePath = new File(runtimePath);
         Collection<File> files = listFiles(basePath, new String[]{"pack"}, true);
+        if(files.isEmpty()) return;
 
         File workdir = new File(nativeLibraryDir);
 
-        ProcessBuilder processBuilder = new ProcessBuilder().directory(workdir);
+        int threadCount = Math.min(files.size(), java.lang.Runtime.getRuntime().availableProcessors());
+        ExecutorService unpackService = Executors.newFixedThreadPool(threadCount);
         for(File jarFile : files){
-            try{
-                Process process = processBuilder.command("./libunpack200.so", "-r", jarFile.getAbsolutePath(), jarFile.getAbsolutePath().replace(".pack", "")).start();
-                process.waitFor();
-            }catch (InterruptedException | IOException e) {
-                Log.e("MULTIRT", "Failed to unpack the runtime !");
-            }
+            unpackService.execute(()->{
+                try{
+                    Process process = new ProcessBuilder().directory(workdir)
+                            .command("./libunpack200.so", "-r", jarFile.getAbsolutePath(), jarFile.getAbsolutePath().replace(".pack", ""))
+                            .start();
+                    process.waitFor();
+                }catch (InterruptedException | IOException e) {
+                    Log.e("MULTIRT", "Failed to unpack the runtime !");
+                }
+            });
+        }
+        unpackService.shutdown();
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            unpackService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }catch (InterruptedException e) {
+            unpackService.shutdownNow();
+            Log.e("MULTIRT", "Interrupted while unpacking the runtime !");
         }
     }
 
@@ -218,38 +241,49 @@ public class MultiRTUtils {
     private static void uncompressTarXZ(final InputStream tarFileInputStream, final File dest) throws IOException {
         net.kdt.pojavlaunch.utils.FileUtils.ensureDirectory(dest);
 
-        byte[] buffer = new byte[8192];
-        TarArchiveInputStream tarIn = new TarArchiveInputStream(
-                new XZCompressorInputStream(tarFileInputStream)
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        // Decompress on a separate thread, so that the XZ decoder keeps working while
+        // the extracted files are being written out.
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(new ReadAheadInputStream(
+                new XZCompressorInputStream(new BufferedInputStream(tarFileInputStream, COPY_BUFFER_SIZE)),
+                READ_AHEAD_CHUNK_SIZE, READ_AHEAD_CHUNK_COUNT)
         );
-        TarArchiveEntry tarEntry = tarIn.getNextTarEntry();
-        // tarIn is a TarArchiveInputStream
-        while (tarEntry != null) {
-
-            final String tarEntryName = tarEntry.getName();
-            // publishProgress(null, "Unpacking " + tarEntry.getName());
-            ProgressLayout.setProgress(ProgressLayout.UNPACK_RUNTIME, 100, R.string.global_unpacking, tarEntryName);
-
-            File destPath = new File(dest, tarEntry.getName());
-            net.kdt.pojavlaunch.utils.FileUtils.ensureParentDirectory(destPath);
-            if (tarEntry.isSymbolicLink()) {
-                try {
-                    // android.system.Os
-                    // Libcore one support all Android versions
-                    Os.symlink(tarEntry.getName(), tarEntry.getLinkName());
-                } catch (Throwable e) {
-                    Log.e("MultiRT", e.toString());
+        long lastProgressMillis = 0;
+        try {
+            TarArchiveEntry tarEntry = tarIn.getNextTarEntry();
+            // tarIn is a TarArchiveInputStream
+            while (tarEntry != null) {
+
+                final String tarEntryName = tarEntry.getName();
+                // Runtimes have thousands of small entries, don't flood the UI with updates
+                long currentMillis = System.currentTimeMillis();
+                if(currentMillis - lastProgressMillis >= PROGRESS_INTERVAL_MS) {
+                    lastProgressMillis = currentMillis;
+                    ProgressLayout.setProgress(ProgressLayout.UNPACK_RUNTIME, 100, R.string.global_unpacking, tarEntryName);
                 }
 
-            } else if (tarEntry.isDirectory()) {
-                net.kdt.pojavlaunch.utils.FileUtils.ensureDirectory(destPath);
-            } else if (!destPath.exists() || destPath.length() != tarEntry.getSize()) {
-                FileOutputStream os = new FileOutputStream(destPath);
-                IOUtils.copyLarge(tarIn, os, buffer);
-                os.close();
+                File destPath = new File(dest, tarEntry.getName());
+                net.kdt.pojavlaunch.utils.FileUtils.ensureParentDirectory(destPath);
+                if (tarEntry.isSymbolicLink()) {
+                    try {
+                        // android.system.Os
+                        // Libcore one support all Android versions
+                        Os.symlink(tarEntry.getName(), tarEntry.getLinkName());
+                    } catch (Throwable e) {
+                        Log.e("MultiRT", e.toString());
+                    }
+
+                } else if (tarEntry.isDirectory()) {
+                    net.kdt.pojavlaunch.utils.FileUtils.ensureDirectory(destPath);
+                } else if (!destPath.exists() || destPath.length() != tarEntry.getSize()) {
+                    try (FileOutputStream os = new FileOutputStream(destPath)) {
+                        IOUtils.copyLarge(tarIn, os, buffer);
+                    }
+                }
+                tarEntry = tarIn.getNextTarEntry();
             }
-            tarEntry = tarIn.getNextTarEntry();
+        } finally {
+            tarIn.close();
         }
-        tarIn.close();
     }
 }
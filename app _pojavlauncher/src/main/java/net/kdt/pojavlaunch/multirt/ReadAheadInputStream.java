@@ -0,0 +1,125 @@
+package net.kdt.pojavlaunch.multirt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * An InputStream that reads its source on a separate thread, ahead of the consumer.
+ * This allows an expensive source (like a decompressor) to keep working while the consumer is
+ * busy with something else (like writing the decompressed data to disk).
+ */
+public class ReadAheadInputStream extends InputStream {
+    private static final Chunk END_OF_STREAM = new Chunk(new byte[0]);
+    private final ArrayBlockingQueue<Chunk> mChunkQueue;
+    // Chunks the consumer is done with, reused by the reader instead of allocating new ones
+    private final ArrayBlockingQueue<Chunk> mFreeChunks;
+    private final Thread mReaderThread;
+    private volatile IOException mReaderException;
+    private Chunk mCurrentChunk;
+    private int mChunkPosition;
+    private boolean mEndReached;
+
+    /**
+     * Create the stream and start reading from the source.
+     * @param source the stream to read ahead from. It is closed by the reader thread once fully read.
+     * @param chunkSize the size of a single read-ahead chunk
+     * @param chunkCount the maximum amount of chunks that can be read ahead
+     */
+    public ReadAheadInputStream(InputStream source, int chunkSize, int chunkCount) {
+        mChunkQueue = new ArrayBlockingQueue<>(chunkCount);
+        // The queued chunks, plus the one being filled and the one being consumed
+        mFreeChunks = new ArrayBlockingQueue<>(chunkCount + 2);
+        mReaderThread = new Thread(() -> readSource(source, chunkSize), "ReadAheadInputStream");
+        mReaderThread.start();
+    }
+
+    private void readSource(InputStream source, int chunkSize) {
+        try (InputStream closeableSource = source) {
+            while(true) {
+                Chunk chunk = mFreeChunks.poll();
+                if(chunk == null) chunk = new Chunk(new byte[chunkSize]);
+                byte[] data = chunk.data;
+                int filled = 0;
+                int read;
+                while(filled < chunkSize && (read = closeableSource.read(data, filled, chunkSize - filled)) != -1) {
+                    filled += read;
+                }
+                if(filled == 0) break;
+                chunk.length = filled;
+                mChunkQueue.put(chunk);
+                if(filled < chunkSize) break;
+            }
+        }catch (InterruptedException e) {
+            // The consumer closed the stream, nobody is waiting for the data anymore
+            return;
+        }catch (IOException e) {
+            mReaderException = e;
+        }catch (Throwable e) {
+            // Anything else must also reach the consumer, or it would wait for the data forever
+            mReaderException = new IOException("Failed to read ahead", e);
+        }
+        try {
+            mChunkQueue.put(END_OF_STREAM);
+        }catch (InterruptedException ignored) {}
+    }
+
+    private boolean ensureChunk() throws IOException {
+        if(mEndReached) return false;
+        if(mCurrentChunk != null && mChunkPosition < mCurrentChunk.length) return true;
+        if(mCurrentChunk != null) mFreeChunks.offer(mCurrentChunk);
+        try {
+            mCurrentChunk = mChunkQueue.take();
+        }catch (InterruptedException e) {
+            mCurrentChunk = null;
+            throw new InterruptedIOException();
+        }
+        if(mCurrentChunk == END_OF_STREAM) {
+            mEndReached = true;
+            if(mReaderException != null) throw mReaderException;
+            return false;
+        }
+        mChunkPosition = 0;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!ensureChunk()) return -1;
+        return mCurrentChunk.data[mChunkPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) return 0;
+        if(!ensureChunk()) return -1;
+        int copyLength = Math.min(len, mCurrentChunk.length - mChunkPosition);
+        System.arraycopy(mCurrentChunk.data, mChunkPosition, b, off, copyLength);
+        mChunkPosition += copyLength;
+        return copyLength;
+    }
+
+    @Override
+    public int available() {
+        if(mCurrentChunk == null || mEndReached) return 0;
+        return mCurrentChunk.length - mChunkPosition;
+    }
+
+    @Override
+    public void close() {
+        mEndReached = true;
+        mReaderThread.interrupt();
+        mChunkQueue.clear();
+        mFreeChunks.clear();
+    }
+
+    private static class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -64,6 +64,7 @@ public class LauncherPreferences {
     public static boolean PREF_ZINK_PREFER_SYSTEM_DRIVER = false;
     
     public static boolean PREF_VERIFY_MANIFEST = true;
+    public static boolean PREF_DEEP_VERIFY = false;
     public static String PREF_DOWNLOAD_SOURCE = "default";
     public static boolean PREF_SKIP_NOTIFICATION_PERMISSION_CHECK = false;
     public static boolean PREF_VSYNC_IN_ZINK = true;
@@ -107,6 +108,7 @@ public class LauncherPreferences {
         PREF_ZINK_PREFER_SYSTEM_DRIVER = DEFAULT_PREF.getBoolean("zinkPreferSystemDriver", false);
         PREF_DOWNLOAD_SOURCE = DEFAULT_PREF.getString("downloadSource", "default");
         PREF_VERIFY_MANIFEST = DEFAULT_PREF.getBoolean("verifyManifest", true);
+        PREF_DEEP_VERIFY = DEFAULT_PREF.getBoolean("deepVerify", false);
         PREF_SKIP_NOTIFICATION_PERMISSION_CHECK = DEFAULT_PREF.getBoolean(PREF_KEY_SKIP_NOTIFICATION_CHECK, false);
         PREF_VSYNC_IN_ZINK = DEFAULT_PREF.getBoolean("vsync_in_zink", true);
 
@@ -5,7 +5,6 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.util.Base64;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -13,13 +12,12 @@ import androidx.core.content.res.ResourcesCompat;
 
 import net.kdt.pojavlaunch.R;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
 public class ProfileIconCache {
-    // Data header format: data:<mime>;<encoding>,<data>
-    private static final String DATA_HEADER = "data:";
     private static final String FALLBACK_ICON_NAME = "default";
     private static final Map<String, Drawable> sIconCache = new HashMap<>();
     private static final Map<String, Drawable> sStaticIconCache = new HashMap<>();
@@ -34,7 +32,8 @@ public class ProfileIconCache {
     public static @NonNull Drawable fetchIcon(Resources resources, @NonNull String key, @Nullable String icon) {
         Drawable cachedIcon = sIconCache.get(key);
         if(cachedIcon != null) return cachedIcon;
-        if(icon != null && icon.startsWith(DATA_HEADER)) return fetchDataIcon(resources, key, icon);
+        if(icon != null && (icon.startsWith(ProfileIconStore.DATA_HEADER)
+                || icon.startsWith(ProfileIconStore.ICON_REFERENCE_HEADER))) return fetchDataIcon(resources, key, icon);
         else return fetchStaticIcon(resources, key, icon);
     }
 
@@ -90,19 +89,16 @@ public class ProfileIconCache {
     }
 
     private static Drawable readDataIcon(Resources resources, String icon) {
-        byte[] iconData = extractIconData(icon);
-        if(iconData == null) return null;
-        Bitmap iconBitmap = BitmapFactory.decodeByteArray(iconData, 0, iconData.length);
+        Bitmap iconBitmap;
+        File iconFile = ProfileIconStore.getStoredIconFile(icon);
+        if(iconFile != null) {
+            iconBitmap = BitmapFactory.decodeFile(iconFile.getAbsolutePath());
+        }else{
+            byte[] iconData = ProfileIconStore.extractIconData(icon);
+            if(iconData == null) return null;
+            iconBitmap = BitmapFactory.decodeByteArray(iconData, 0, iconData.length);
+        }
         if(iconBitmap == null) return null;
         return new BitmapDrawable(resources, iconBitmap);
     }
-
-    private static byte[] extractIconData(String inputString) {
-        int firstSemicolon = inputString.indexOf(';');
-        int commaAfterSemicolon = inputString.indexOf(',');
-        if(firstSemicolon == -1 || commaAfterSemicolon == -1) return null;
-        String dataEncoding = inputString.substring(firstSemicolon+1, commaAfterSemicolon);
-        if(!dataEncoding.equals("base64")) return null;
-        return Base64.decode(inputString.substring(commaAfterSemicolon+1), 0);
-    }
 }
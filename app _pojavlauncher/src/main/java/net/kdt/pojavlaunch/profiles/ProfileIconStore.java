@@ -0,0 +1,114 @@
+package net.kdt.pojavlaunch.profiles;
+
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import net.kdt.pojavlaunch.Tools;
+import net.kdt.pojavlaunch.utils.FileUtils;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Stores the icons of profiles as files named after the hash of their content, so that
+ * launcher_profiles.json only needs to hold a short reference instead of the whole image.
+ * Identical icons are only stored once.
+ */
+public class ProfileIconStore {
+    // Data header format: data:<mime>;<encoding>,<data>
+    public static final String DATA_HEADER = "data:";
+    public static final String ICON_REFERENCE_HEADER = "pojav-icon:";
+
+    /**
+     * Move a data icon into the icon store.
+     * @param icon the icon of a profile
+     * @return the reference to the stored icon, or the original icon if it is not a data icon
+     * or if it could not be stored
+     */
+    public static @Nullable String storeIcon(@Nullable String icon) {
+        if(icon == null || !icon.startsWith(DATA_HEADER)) return icon;
+        byte[] iconData = extractIconData(icon);
+        if(iconData == null) return icon;
+        String iconHash = DigestUtils.sha1Hex(iconData);
+        File iconFile = getIconFile(iconHash);
+        if(iconFile.isFile() && iconFile.length() == iconData.length) return ICON_REFERENCE_HEADER + iconHash;
+        File tempFile = new File(iconFile.getAbsolutePath() + ".tmp");
+        try {
+            FileUtils.ensureParentDirectory(tempFile);
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                outputStream.write(iconData);
+            }
+            if(!tempFile.renameTo(iconFile)) throw new IOException("Failed to move the icon into place");
+            return ICON_REFERENCE_HEADER + iconHash;
+        }catch (IOException e) {
+            Log.w("ProfileIconStore", "Failed to store profile icon", e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return icon;
+        }
+    }
+
+    /**
+     * Get the file of a stored icon.
+     * @param icon the icon of a profile
+     * @return the file of the icon, or null if the icon is not a reference to a stored icon
+     */
+    public static @Nullable File getStoredIconFile(@Nullable String icon) {
+        if(icon == null || !icon.startsWith(ICON_REFERENCE_HEADER)) return null;
+        String iconHash = icon.substring(ICON_REFERENCE_HEADER.length());
+        // The hash is used as a file name, don't let it point anywhere else
+        if(iconHash.isEmpty() || iconHash.contains("/") || iconHash.contains("..")) return null;
+        return getIconFile(iconHash);
+    }
+
+    /**
+     * Delete the stored icons that no profile refers to anymore. Performs I/O, must not be called
+     * on the UI thread, and must not run while icons are being stored.
+     * @param referencedIcons the icons of all the profiles
+     */
+    public static void removeUnreferencedIcons(Collection<String> referencedIcons) {
+        Set<String> referencedFiles = new HashSet<>();
+        for(String icon : referencedIcons) {
+            File iconFile = getStoredIconFile(icon);
+            if(iconFile != null) referencedFiles.add(iconFile.getName());
+        }
+        File[] storedFiles = new File(Tools.DIR_GAME_NEW, "profile_icons").listFiles();
+        if(storedFiles == null) return;
+        int removedIcons = 0;
+        for(File storedFile : storedFiles) {
+            if(referencedFiles.contains(storedFile.getName())) continue;
+            if(storedFile.delete()) removedIcons++;
+        }
+        if(removedIcons > 0) Log.i("ProfileIconStore", "Removed " + removedIcons + " unused profile icons");
+    }
+
+    /**
+     * Decode the content of a data icon
+     * @param inputString the data icon
+     * @return the decoded content, or null if the icon is not base64 data
+     */
+    public static @Nullable byte[] extractIconData(String inputString) {
+        int firstSemicolon = inputString.indexOf(';');
+        int commaAfterSemicolon = inputString.indexOf(',');
+        if(firstSemicolon == -1 || commaAfterSemicolon == -1) return null;
+        String dataEncoding = inputString.substring(firstSemicolon+1, commaAfterSemicolon);
+        if(!dataEncoding.equals("base64")) return null;
+        try {
+            return Base64.decode(inputString.substring(commaAfterSemicolon+1), 0);
+        }catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static File getIconFile(String iconHash) {
+        return new File(Tools.DIR_GAME_NEW, "profile_icons/" + iconHash);
+    }
+}
@@ -8,13 +8,17 @@ import android.widget.BaseExpandableListAdapter;
 import android.widget.ExpandableListAdapter;
 import android.widget.TextView;
 
+import androidx.annotation.Nullable;
+
 import net.kdt.pojavlaunch.JMinecraftVersionList;
+import net.kdt.pojavlaunch.JMinecraftVersionList.VersionType;
 import net.kdt.pojavlaunch.R;
 import net.kdt.pojavlaunch.Tools;
 import net.kdt.pojavlaunch.utils.FilteredSubList;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class VersionListAdapter extends BaseExpandableListAdapter implements ExpandableListAdapter {
@@ -27,14 +31,14 @@ public class VersionListAdapter extends BaseExpandableListAdapter implements Exp
     private final boolean mHideCustomVersions;
     private final int mSnapshotListPosition;
 
-    public VersionListAdapter(JMinecraftVersionList.Version[] versionList, boolean hideCustomVersions, Context ctx){
+    public VersionListAdapter(@Nullable JMinecraftVersionList versionList, boolean hideCustomVersions, Context ctx){
         mHideCustomVersions = hideCustomVersions;
         mLayoutInflater = (LayoutInflater) ctx.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 
-        List<JMinecraftVersionList.Version> releaseList = new FilteredSubList<>(versionList, item -> item.type.equals("release"));
-        List<JMinecraftVersionList.Version> snapshotList = new FilteredSubList<>(versionList, item -> item.type.equals("snapshot"));
-        List<JMinecraftVersionList.Version> betaList = new FilteredSubList<>(versionList, item -> item.type.equals("old_beta"));
-        List<JMinecraftVersionList.Version> alphaList = new FilteredSubList<>(versionList, item -> item.type.equals("old_alpha"));
+        List<JMinecraftVersionList.Version> releaseList = getTypeList(versionList, VersionType.RELEASE);
+        List<JMinecraftVersionList.Version> snapshotList = getTypeList(versionList, VersionType.SNAPSHOT);
+        List<JMinecraftVersionList.Version> betaList = getTypeList(versionList, VersionType.OLD_BETA);
+        List<JMinecraftVersionList.Version> alphaList = getTypeList(versionList, VersionType.OLD_ALPHA);
 
         // Query installed versions
         mInstalledVersions = new File(Tools.DIR_GAME_NEW + "/versions").list();
@@ -63,6 +67,11 @@ public class VersionListAdapter extends BaseExpandableListAdapter implements Exp
         }
     }
 
+    private static List<JMinecraftVersionList.Version> getTypeList(@Nullable JMinecraftVersionList versionList, VersionType type) {
+        if(versionList == null || versionList.versions == null) return Collections.emptyList();
+        return new FilteredSubList<>(versionList.versions, versionList.getVersionIndices(type));
+    }
+
     @Override
     public int getGroupCount() {
         return mGroups.length;
@@ -18,10 +18,7 @@ public class VersionSelectorDialog {
         ExpandableListView expandableListView = (ExpandableListView) LayoutInflater.from(context)
                 .inflate(R.layout.dialog_expendable_list_view , null);
         JMinecraftVersionList jMinecraftVersionList = (JMinecraftVersionList) getValue(ExtraConstants.RELEASE_TABLE);
-        JMinecraftVersionList.Version[] versionArray;
-        if(jMinecraftVersionList == null || jMinecraftVersionList.versions == null) versionArray = new JMinecraftVersionList.Version[0];
-        else versionArray = jMinecraftVersionList.versions;
-        VersionListAdapter adapter = new VersionListAdapter(versionArray, hideCustomVersions, context);
+        VersionListAdapter adapter = new VersionListAdapter(jMinecraftVersionList, hideCustomVersions, context);
 
         expandableListView.setAdapter(adapter);
         builder.setView(expandableListView);
@@ -9,6 +9,8 @@ public class DownloaderProgressWrapper implements Tools.DownloaderFeedback {
     private final int mProgressString;
     private final String mProgressRecord;
     public String extraString = null;
+    private int mLastProgress = -1;
+    private int mLastCurrentHundredthMb = -1;
 
     /**
      * A simple wrapper to send the downloader progress to ProgressKeeper
@@ -22,6 +24,12 @@ public class DownloaderProgressWrapper implements Tools.DownloaderFeedback {
 
     @Override
     public void updateProgress(int curr, int max) {
+        int progress = (int) Math.max((float)curr/max*100,0);
+        // The downloader reports every chunk, skip the reports that wouldn't change the displayed values (MB with 2 decimals)
+        int currentHundredthMb = (int) (curr / BYTE_TO_MB * 100);
+        if(progress == mLastProgress && currentHundredthMb == mLastCurrentHundredthMb) return;
+        mLastProgress = progress;
+        mLastCurrentHundredthMb = currentHundredthMb;
         Object[] va;
         if(extraString != null)  {
             va = new Object[3];
@@ -35,6 +43,6 @@ public class DownloaderProgressWrapper implements Tools.DownloaderFeedback {
             va[1] = max/BYTE_TO_MB;
         }
         // the allocations are fine because thats how java implements variadic arguments in bytecode: an array of whatever
-        ProgressKeeper.submitProgress(mProgressRecord, (int) Math.max((float)curr/max*100,0), mProgressString, va);
+        ProgressKeeper.submitProgress(mProgressRecord, progress, mProgressString, va);
     }
 }
@@ -1,75 +1,147 @@
 package net.kdt.pojavlaunch.progresskeeper;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Keeps track of the progress of running tasks, and forwards it to the listeners.
+ * Progress updates don't lock: they are published as one immutable state per record, and the listeners
+ * are notified of the latest state of every updated record on a single notifier thread, at most
+ * once per notification interval. Starting and ending tasks is rare, so it is done under a lock
+ * to keep the listeners and the task count consistent.
+ */
 public class ProgressKeeper {
-    private static final HashMap<String, List<ProgressListener>> sProgressListeners = new HashMap<>();
-    private static final HashMap<String, ProgressState> sProgressStates = new HashMap<>();
-    private static final List<TaskCountListener> sTaskCountListeners = new ArrayList<>();
-
-    public static synchronized void submitProgress(String progressRecord, int progress, int resid, Object... va) {
-        ProgressState progressState = sProgressStates.get(progressRecord);
-        boolean shouldCallStarted = progressState == null;
-        boolean shouldCallEnded = resid == -1 && progress == -1;
-        if(shouldCallEnded) {
-            shouldCallStarted = false;
-            sProgressStates.remove(progressRecord);
-            updateTaskCount();
-        }else if(shouldCallStarted){
-            sProgressStates.put(progressRecord, (progressState = new ProgressState()));
+    public static final long DEFAULT_NOTIFICATION_INTERVAL_MS = 33;
+
+    private static final ConcurrentHashMap<String, List<ProgressListener>> sProgressListeners = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ProgressRecord> sProgressRecords = new ConcurrentHashMap<>();
+    private static final List<TaskCountListener> sTaskCountListeners = new CopyOnWriteArrayList<>();
+    private static final Object sStructureLock = new Object();
+    private static final AtomicBoolean sNotificationScheduled = new AtomicBoolean(false);
+    private static final ScheduledExecutorService sNotifier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread notifierThread = new Thread(runnable, "ProgressKeeper");
+        notifierThread.setDaemon(true);
+        return notifierThread;
+    });
+    private static volatile long sNotificationInterval = DEFAULT_NOTIFICATION_INTERVAL_MS;
+    private static volatile long sLastNotificationTime = 0;
+
+    public static void submitProgress(String progressRecord, int progress, int resid, Object... va) {
+        if(resid == -1 && progress == -1) {
+            endProgress(progressRecord);
+            return;
+        }
+        ProgressRecord record = sProgressRecords.get(progressRecord);
+        if(record == null) record = startProgress(progressRecord);
+        ProgressState progressState = new ProgressState(progress, resid, va);
+        record.latestState = progressState;
+        record.pendingState.set(progressState);
+        scheduleNotification();
+    }
+
+    private static ProgressRecord startProgress(String progressRecord) {
+        synchronized (sStructureLock) {
+            ProgressRecord record = sProgressRecords.get(progressRecord);
+            if(record != null) return record;
+            record = new ProgressRecord();
+            sProgressRecords.put(progressRecord, record);
             updateTaskCount();
+            List<ProgressListener> progressListeners = sProgressListeners.get(progressRecord);
+            if(progressListeners != null)
+                for(ProgressListener listener : progressListeners) listener.onProgressStarted();
+            return record;
         }
-        if(progressState != null) {
-            progressState.progress = progress;
-            progressState.resid = resid;
-            progressState.varArg = va;
+    }
+
+    private static void endProgress(String progressRecord) {
+        synchronized (sStructureLock) {
+            boolean wasStarted = sProgressRecords.remove(progressRecord) != null;
+            if(wasStarted) updateTaskCount();
+            List<ProgressListener> progressListeners = sProgressListeners.get(progressRecord);
+            if(progressListeners != null)
+                for(ProgressListener listener : progressListeners) listener.onProgressEnded();
         }
+    }
 
-        List<ProgressListener> progressListeners = sProgressListeners.get(progressRecord);
-        if(progressListeners != null)
-            for(ProgressListener listener : progressListeners) {
-                    if(shouldCallStarted) listener.onProgressStarted();
-                    else if(shouldCallEnded) listener.onProgressEnded();
-                    else listener.onProgressUpdated(progress, resid, va);
+    private static void scheduleNotification() {
+        if(!sNotificationScheduled.compareAndSet(false, true)) return;
+        long delay = Math.max(0, sLastNotificationTime + sNotificationInterval - System.currentTimeMillis());
+        sNotifier.schedule(ProgressKeeper::notifyListeners, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /** Send the latest state of every updated record to its listeners */
+    private static void notifyListeners() {
+        // Cleared first, so that updates submitted during the notification get their own
+        sNotificationScheduled.set(false);
+        sLastNotificationTime = System.currentTimeMillis();
+        synchronized (sStructureLock) {
+            for(Map.Entry<String, ProgressRecord> entry : sProgressRecords.entrySet()) {
+                // Taking the pending state also marks the record as notified
+                ProgressState progressState = entry.getValue().pendingState.getAndSet(null);
+                if(progressState == null) continue;
+                List<ProgressListener> progressListeners = sProgressListeners.get(entry.getKey());
+                if(progressListeners == null) continue;
+                for(ProgressListener listener : progressListeners) {
+                    listener.onProgressUpdated(progressState.progress, progressState.resid, progressState.varArg);
+                }
             }
+        }
+    }
+
+    /**
+     * Set the minimum delay between two progress notifications of the listeners.
+     * Starting and ending tasks is always notified immediately.
+     * @param intervalMs the delay, in milliseconds
+     */
+    public static void setNotificationInterval(long intervalMs) {
+        sNotificationInterval = Math.max(0, intervalMs);
     }
 
-    private static synchronized void updateTaskCount() {
-        int count = sProgressStates.size();
+    private static void updateTaskCount() {
+        int count = sProgressRecords.size();
         for(TaskCountListener listener : sTaskCountListeners) {
             listener.onUpdateTaskCount(count);
         }
     }
 
-    public static synchronized void addListener(String progressRecord, ProgressListener listener) {
-        ProgressState state = sProgressStates.get(progressRecord);
-        if(state != null && (state.resid != -1 || state.progress != -1)) {
-            listener.onProgressStarted();
-            listener.onProgressUpdated(state.progress, state.resid, state.varArg);
-        }else{
-            listener.onProgressEnded();
+    public static void addListener(String progressRecord, ProgressListener listener) {
+        synchronized (sStructureLock) {
+            ProgressRecord record = sProgressRecords.get(progressRecord);
+            ProgressState state = record != null ? record.latestState : null;
+            if(state != null && (state.resid != -1 || state.progress != -1)) {
+                listener.onProgressStarted();
+                listener.onProgressUpdated(state.progress, state.resid, state.varArg);
+            }else{
+                listener.onProgressEnded();
+            }
+            List<ProgressListener> progressListeners = sProgressListeners.get(progressRecord);
+            if(progressListeners == null) sProgressListeners.put(progressRecord, (progressListeners = new CopyOnWriteArrayList<>()));
+            progressListeners.add(listener);
         }
-        List<ProgressListener> listenerWeakReferenceList = sProgressListeners.get(progressRecord);
-        if(listenerWeakReferenceList == null) sProgressListeners.put(progressRecord, (listenerWeakReferenceList = new ArrayList<>()));
-        listenerWeakReferenceList.add(listener);
     }
 
-    public static synchronized void removeListener(String progressRecord, ProgressListener listener) {
-        List<ProgressListener> listenerWeakReferenceList = sProgressListeners.get(progressRecord);
-        if(listenerWeakReferenceList != null) listenerWeakReferenceList.remove(listener);
+    public static void removeListener(String progressRecord, ProgressListener listener) {
+        List<ProgressListener> progressListeners = sProgressListeners.get(progressRecord);
+        if(progressListeners != null) progressListeners.remove(listener);
     }
 
-    public static synchronized void addTaskCountListener(TaskCountListener listener) {
-        listener.onUpdateTaskCount(sProgressStates.size());
-        if(!sTaskCountListeners.contains(listener)) sTaskCountListeners.add(listener);
+    public static void addTaskCountListener(TaskCountListener listener) {
+        addTaskCountListener(listener, true);
     }
-    public static synchronized void addTaskCountListener(TaskCountListener listener, boolean runUpdate) {
-        if(runUpdate) listener.onUpdateTaskCount(sProgressStates.size());
-        if(!sTaskCountListeners.contains(listener)) sTaskCountListeners.add(listener);
+    public static void addTaskCountListener(TaskCountListener listener, boolean runUpdate) {
+        synchronized (sStructureLock) {
+            if(runUpdate) listener.onUpdateTaskCount(sProgressRecords.size());
+            if(!sTaskCountListeners.contains(listener)) sTaskCountListeners.add(listener);
+        }
     }
-    public static synchronized void removeTaskCountListener(TaskCountListener listener) {
+    public static void removeTaskCountListener(TaskCountListener listener) {
         sTaskCountListeners.remove(listener);
     }
 
@@ -97,11 +169,18 @@ public class ProgressKeeper {
         addTaskCountListener(listener);
     }
 
-    public static synchronized int getTaskCount() {
-        return sProgressStates.size();
+    public static int getTaskCount() {
+        return sProgressRecords.size();
     }
 
     public static boolean hasOngoingTasks() {
         return getTaskCount() > 0;
     }
+
+    private static class ProgressRecord {
+        // The latest state of the record, for the listeners added later on
+        volatile ProgressState latestState;
+        // The latest state that the listeners weren't notified of yet, or null if there is none
+        final AtomicReference<ProgressState> pendingState = new AtomicReference<>();
+    }
 }
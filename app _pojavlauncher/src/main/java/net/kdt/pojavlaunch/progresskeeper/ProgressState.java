@@ -1,7 +1,17 @@
 package net.kdt.pojavlaunch.progresskeeper;
 
+/**
+ * One progress update of a record. Immutable, so that the progress, the resource and its
+ * arguments are always seen together.
+ */
 public class ProgressState {
-    int progress;
-    int resid;
-    Object[] varArg;
+    final int progress;
+    final int resid;
+    final Object[] varArg;
+
+    ProgressState(int progress, int resid, Object[] varArg) {
+        this.progress = progress;
+        this.resid = resid;
+        this.varArg = varArg;
+    }
 }
@@ -17,10 +17,7 @@ public class AsyncMinecraftDownloader {
     public static JMinecraftVersionList.Version getListedVersion(String normalizedVersionString) {
         JMinecraftVersionList versionList = (JMinecraftVersionList) ExtraCore.getValue(ExtraConstants.RELEASE_TABLE);
         if(versionList == null || versionList.versions == null) return null; // can't have listed versions if there's no list
-        for(JMinecraftVersionList.Version version : versionList.versions) {
-            if(version.id.equals(normalizedVersionString)) return version;
-        }
-        return null;
+        return versionList.getVersion(normalizedVersionString);
     }
 
     public interface DoneListener{
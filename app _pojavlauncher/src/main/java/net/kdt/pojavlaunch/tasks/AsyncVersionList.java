@@ -1,83 +1,109 @@
 package net.kdt.pojavlaunch.tasks;
 
 import static net.kdt.pojavlaunch.PojavApplication.sExecutorService;
-import static net.kdt.pojavlaunch.utils.DownloadUtils.downloadString;
 
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.stream.JsonReader;
+import com.google.gson.JsonParseException;
 
 import net.kdt.pojavlaunch.JMinecraftVersionList;
 import net.kdt.pojavlaunch.Tools;
 import net.kdt.pojavlaunch.prefs.LauncherPreferences;
+import net.kdt.pojavlaunch.utils.DownloadUtils;
+import net.kdt.pojavlaunch.utils.VersionListCache;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 
-/** Class getting the version list, and that's all really */
+/**
+ * Class getting the version list, and that's all really
+ * The version list is kept in a binary cache, and the manifest is only downloaded again when it
+ * changed on the server.
+ */
 public class AsyncVersionList {
-
-    public void getVersionList(@Nullable VersionDoneListener listener, boolean secondPass){
+    private static final long VERSION_LIST_MAX_AGE = 86400000;
+
+    /**
+     * Get the version list. If a cached version list is available, the listener gets it right away.
+     * If the cache is older than a day, the manifest is then revalidated, and the listener is called
+     * a second time if it changed.
+     * @param listener the listener to call with the version list. Gets null if no version list could be obtained
+     */
+    public void getVersionList(@Nullable VersionDoneListener listener){
         sExecutorService.execute(() -> {
-            File versionFile = new File(Tools.DIR_DATA + "/version_list.json");
-            JMinecraftVersionList versionList = null;
-            try{
-                if(!versionFile.exists() || (System.currentTimeMillis() > versionFile.lastModified() + 86400000 )){
-                    versionList = downloadVersionList(LauncherPreferences.PREF_VERSION_REPOS);
-                }
-            }catch (Exception e){
-                Log.e("AsyncVersionList", "Refreshing version list failed :" + e);
-                e.printStackTrace();
-            }
-
-            // Fallback when no network or not needed
-            if (versionList == null) {
-                try {
-                    versionList = Tools.GLOBAL_GSON.fromJson(new JsonReader(new FileReader(versionFile)), JMinecraftVersionList.class);
-                } catch (FileNotFoundException e) {
-                    e.printStackTrace();
-                } catch (JsonIOException | JsonSyntaxException e) {
-                    e.printStackTrace();
-                    versionFile.delete();
-                    if(!secondPass)
-                        getVersionList(listener, true);
-                }
+            File cacheFile = new File(Tools.DIR_DATA + "/version_list.bin");
+            VersionListCache.CachedVersionList cachedList = VersionListCache.read(cacheFile);
+            if(cachedList == null) cachedList = migrateLegacyVersionList(cacheFile);
+            if(cachedList != null) {
+                if(listener != null) listener.onVersionDone(cachedList.versionList);
+                if(System.currentTimeMillis() < cacheFile.lastModified() + VERSION_LIST_MAX_AGE) return;
             }
 
-            if(listener != null)
-                listener.onVersionDone(versionList);
+            JMinecraftVersionList refreshedList = refreshVersionList(LauncherPreferences.PREF_VERSION_REPOS,
+                    cacheFile, cachedList != null ? cachedList.validators : null);
+            // Don't report a failed refresh if the cached list was already sent
+            if(listener != null && (refreshedList != null || cachedList == null))
+                listener.onVersionDone(refreshedList);
         });
     }
 
-
+    /**
+     * Download the version manifest if it changed since the cached one, and cache it.
+     * @return the new version list, or null if it did not change or if it could not be downloaded
+     */
     @SuppressWarnings("SameParameterValue")
-    private JMinecraftVersionList downloadVersionList(String mirror){
-        JMinecraftVersionList list = null;
+    private JMinecraftVersionList refreshVersionList(String mirror, File cacheFile,
+                                                     @Nullable DownloadUtils.CacheValidators validators){
+        // Download into a temporary file and parse it from there, so that the whole manifest
+        // never has to be held in memory as a String
+        File tempFile = new File(Tools.DIR_DATA + "/version_list.json.tmp");
         try{
             Log.i("ExtVL", "Syncing to external: " + mirror);
-            String jsonString = downloadString(mirror);
-            list = Tools.GLOBAL_GSON.fromJson(jsonString, JMinecraftVersionList.class);
+            DownloadUtils.CacheValidators newValidators = DownloadUtils.downloadFileIfModified(mirror, tempFile, validators);
+            if(newValidators == null) {
+                Log.i("ExtVL", "The version list did not change");
+                //noinspection ResultOfMethodCallIgnored
+                cacheFile.setLastModified(System.currentTimeMillis());
+                return null;
+            }
+            JMinecraftVersionList list = Tools.readJson(tempFile, JMinecraftVersionList.class);
+            if(list == null || list.versions == null) throw new IOException("The version list is empty");
             Log.i("ExtVL","Downloaded the version list, len=" + list.versions.length);
+            VersionListCache.write(cacheFile, list, newValidators);
+            return list;
+        }catch (IOException | JsonParseException e){
+            Log.e("AsyncVersionList", "Refreshing version list failed: " + e);
+            return null;
+        }finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
 
-            // Then save the version list
-            //TODO make it not save at times ?
-            FileOutputStream fos = new FileOutputStream(Tools.DIR_DATA + "/version_list.json");
-            fos.write(jsonString.getBytes());
-            fos.close();
-
-
-
-        }catch (IOException e){
-            Log.e("AsyncVersionList", e.toString());
+    /**
+     * Convert the JSON version list saved by older versions of the launcher into the binary cache
+     * @return the converted version list, or null if there was none
+     */
+    private VersionListCache.CachedVersionList migrateLegacyVersionList(File cacheFile) {
+        File legacyFile = new File(Tools.DIR_DATA + "/version_list.json");
+        if(!legacyFile.isFile()) return null;
+        try {
+            JMinecraftVersionList list = Tools.readJson(legacyFile, JMinecraftVersionList.class);
+            if(list == null || list.versions == null) return null;
+            VersionListCache.write(cacheFile, list, null);
+            // Keep the age of the old list, so that it still gets refreshed on time
+            //noinspection ResultOfMethodCallIgnored
+            cacheFile.setLastModified(legacyFile.lastModified());
+            return new VersionListCache.CachedVersionList(list, null);
+        }catch (IOException | JsonParseException e) {
+            Log.w("AsyncVersionList", "Failed to convert the old version list", e);
+            return null;
+        }finally {
+            //noinspection ResultOfMethodCallIgnored
+            legacyFile.delete();
         }
-        return list;
     }
 
     /** Basic listener, acting as a callback */
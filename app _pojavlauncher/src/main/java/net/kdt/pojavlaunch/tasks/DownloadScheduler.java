@@ -0,0 +1,237 @@
+package net.kdt.pojavlaunch.tasks;
+
+import android.util.Log;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A download executor that adjusts the amount of parallel downloads to the observed conditions
+ * in an AIMD (additive increase, multiplicative decrease) fashion:
+ * - while the throughput keeps improving, one more download slot is added at a time
+ * - if adding a slot did not improve the throughput, it is taken back
+ * - if a host starts failing requests, the amount of slots is halved
+ * After any decrease, the amount of slots is held for HOLD_INTERVALS adjustment intervals
+ * before probing with one more slot again.
+ * Small files are limited by latency and get all of the slots, while large files are limited
+ * by bandwidth and only get a quarter of them.
+ * The slots are enforced by a limiter that every task goes through before it runs, since the pools
+ * can't shed threads while their queues are full.
+ */
+public class DownloadScheduler {
+    /** Files of this size or larger are scheduled on the large file pool */
+    public static final long LARGE_FILE_THRESHOLD = 1024 * 1024;
+    private static final int MIN_CONCURRENCY = 2;
+    private static final int MAX_CONCURRENCY = Math.min(16, Runtime.getRuntime().availableProcessors() * 4);
+    private static final int INITIAL_CONCURRENCY = Math.min(4, MAX_CONCURRENCY);
+    private static final long ADJUST_INTERVAL_MS = 1000;
+    private static final double IMPROVEMENT_THRESHOLD = 1.05d;
+    private static final double FAILURE_RATIO_THRESHOLD = 0.1d;
+    private static final int HOLD_INTERVALS = 5;
+
+    private final ThreadPoolExecutor mSmallFilePool;
+    private final ThreadPoolExecutor mLargeFilePool;
+    private final ConcurrencyLimiter mSmallFileLimiter = new ConcurrencyLimiter(INITIAL_CONCURRENCY);
+    private final ConcurrencyLimiter mLargeFileLimiter = new ConcurrencyLimiter(getLargeFileConcurrency(INITIAL_CONCURRENCY));
+    private final ConcurrentHashMap<String, HostStatistics> mHostStatistics = new ConcurrentHashMap<>();
+    private int mConcurrency = INITIAL_CONCURRENCY;
+    private long mLastAdjustMillis;
+    private double mLastThroughput;
+    private boolean mLastAdjustWasIncrease;
+    private int mRemainingHoldIntervals;
+
+    public DownloadScheduler() {
+        mSmallFilePool = createPool(INITIAL_CONCURRENCY);
+        mLargeFilePool = createPool(getLargeFileConcurrency(INITIAL_CONCURRENCY));
+        mLastAdjustMillis = System.currentTimeMillis();
+    }
+
+    private static ThreadPoolExecutor createPool(int concurrency) {
+        // With an unbounded queue, only core threads are ever started. Raising the core pool size
+        // starts new threads right away, but lowering it doesn't stop the busy ones, so the actual
+        // limit is enforced by a ConcurrencyLimiter.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, MAX_CONCURRENCY,
+                500, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static int getLargeFileConcurrency(int concurrency) {
+        return Math.max(1, concurrency / 4);
+    }
+
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        mSmallFilePool.setRejectedExecutionHandler(handler);
+        mLargeFilePool.setRejectedExecutionHandler(handler);
+    }
+
+    /**
+     * Schedule a download.
+     * @param task the task that performs the download
+     * @param expectedSize the expected size of the download in bytes, or 0 if unknown
+     */
+    public void execute(Runnable task, long expectedSize) {
+        if(expectedSize >= LARGE_FILE_THRESHOLD) mLargeFilePool.execute(new LimitedTask(task, mLargeFileLimiter));
+        else mSmallFilePool.execute(new LimitedTask(task, mSmallFileLimiter));
+    }
+
+    public void shutdown() {
+        mSmallFilePool.shutdown();
+        mLargeFilePool.shutdown();
+    }
+
+    public void shutdownNow() {
+        mSmallFilePool.shutdownNow();
+        mLargeFilePool.shutdownNow();
+    }
+
+    /**
+     * Wait for all scheduled downloads to finish after a shutdown request.
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return true if all downloads finished, false if the timeout elapsed before that
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if(!mSmallFilePool.awaitTermination(timeout, unit)) return false;
+        return mLargeFilePool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the result of a request, for the per-host error rate tracking.
+     * @param url the URL that was requested
+     * @param successful whether the request completed successfully
+     */
+    public void reportResult(String url, boolean successful) {
+        String host = getHost(url);
+        HostStatistics statistics = mHostStatistics.get(host);
+        if(statistics == null) {
+            HostStatistics newStatistics = new HostStatistics();
+            statistics = mHostStatistics.putIfAbsent(host, newStatistics);
+            if(statistics == null) statistics = newStatistics;
+        }
+        if(successful) statistics.successes.incrementAndGet();
+        else statistics.failures.incrementAndGet();
+    }
+
+    /**
+     * Feed the current throughput into the concurrency controller. This is meant to be called
+     * periodically from the thread that waits for the downloads, the actual adjustments
+     * only happen once per ADJUST_INTERVAL_MS.
+     * @param throughput the current average throughput, as reported by a SpeedCalculator
+     */
+    public void feedThroughput(double throughput) {
+        long currentMillis = System.currentTimeMillis();
+        if(currentMillis - mLastAdjustMillis < ADJUST_INTERVAL_MS) return;
+        mLastAdjustMillis = currentMillis;
+
+        int newConcurrency;
+        if(collectFailingHosts()) {
+            newConcurrency = Math.max(MIN_CONCURRENCY, mConcurrency / 2);
+            mLastAdjustWasIncrease = false;
+            mRemainingHoldIntervals = HOLD_INTERVALS;
+        }else if(mLastAdjustWasIncrease && throughput < mLastThroughput * IMPROVEMENT_THRESHOLD) {
+            // The last added slot did not pay off, take it back and hold there
+            newConcurrency = Math.max(MIN_CONCURRENCY, mConcurrency - 1);
+            mLastAdjustWasIncrease = false;
+            mRemainingHoldIntervals = HOLD_INTERVALS;
+        }else if(mRemainingHoldIntervals > 0) {
+            mRemainingHoldIntervals--;
+            newConcurrency = mConcurrency;
+        }else {
+            newConcurrency = Math.min(MAX_CONCURRENCY, mConcurrency + 1);
+            mLastAdjustWasIncrease = newConcurrency != mConcurrency;
+        }
+        mLastThroughput = throughput;
+        if(newConcurrency == mConcurrency) return;
+        Log.i("DownloadScheduler", "Concurrency " + mConcurrency + " -> " + newConcurrency);
+        mConcurrency = newConcurrency;
+        mSmallFileLimiter.setLimit(newConcurrency);
+        mLargeFileLimiter.setLimit(getLargeFileConcurrency(newConcurrency));
+        // Pools are only grown, the threads above the limit just wait on the limiter
+        growPool(mSmallFilePool, newConcurrency);
+        growPool(mLargeFilePool, getLargeFileConcurrency(newConcurrency));
+    }
+
+    private static void growPool(ThreadPoolExecutor pool, int concurrency) {
+        if(concurrency > pool.getCorePoolSize()) pool.setCorePoolSize(concurrency);
+    }
+
+    /**
+     * Check the failure ratios of all hosts since the last check, and reset the counters.
+     * @return true if any host failed too many of the requests
+     */
+    private boolean collectFailingHosts() {
+        boolean hasFailingHost = false;
+        for(HostStatistics statistics : mHostStatistics.values()) {
+            int failures = statistics.failures.getAndSet(0);
+            int total = statistics.successes.getAndSet(0) + failures;
+            if(failures > 1 && failures > total * FAILURE_RATIO_THRESHOLD) hasFailingHost = true;
+        }
+        return hasFailingHost;
+    }
+
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost();
+        }catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /** A semaphore whose amount of permits can be changed while permits are taken */
+    private static class ConcurrencyLimiter extends Semaphore {
+        private int mLimit;
+
+        ConcurrencyLimiter(int limit) {
+            super(limit);
+            mLimit = limit;
+        }
+
+        synchronized void setLimit(int limit) {
+            // Reducing can go below zero, the running tasks then have to finish before new ones start
+            if(limit > mLimit) release(limit - mLimit);
+            else if(limit < mLimit) reducePermits(mLimit - limit);
+            mLimit = limit;
+        }
+    }
+
+    private static class LimitedTask implements Runnable {
+        private final Runnable mTask;
+        private final ConcurrencyLimiter mLimiter;
+
+        LimitedTask(Runnable task, ConcurrencyLimiter limiter) {
+            mTask = task;
+            mLimiter = limiter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mLimiter.acquire();
+            }catch (InterruptedException e) {
+                // The scheduler got shut down while the task was waiting for its turn
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                mTask.run();
+            }finally {
+                mLimiter.release();
+            }
+        }
+    }
+
+    private static class HostStatistics {
+        final AtomicInteger successes = new AtomicInteger(0);
+        final AtomicInteger failures = new AtomicInteger(0);
+    }
+}
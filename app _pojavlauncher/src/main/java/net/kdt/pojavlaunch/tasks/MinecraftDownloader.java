@@ -21,6 +21,7 @@ import net.kdt.pojavlaunch.mirrors.MirrorTamperedException;
 import net.kdt.pojavlaunch.prefs.LauncherPreferences;
 import net.kdt.pojavlaunch.utils.DownloadUtils;
 import net.kdt.pojavlaunch.utils.FileUtils;
+import net.kdt.pojavlaunch.utils.LaunchClasspathCache;
 import net.kdt.pojavlaunch.value.DependentLibrary;
 import net.kdt.pojavlaunch.value.MinecraftClientInfo;
 import net.kdt.pojavlaunch.value.MinecraftLibraryArtifact;
@@ -33,6 +34,7 @@ import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -40,17 +42,24 @@ public class MinecraftDownloader {
     private static final double ONE_MEGABYTE = (1024d * 1024d);
     public static final String MINECRAFT_RES = "https://resources.download.minecraft.net/";
     private static final String MAVEN_CENTRAL_REPO1 = "https://repo1.maven.org/maven2/";
+    private static final int SIZE_PROBE_THREADS = 8;
     private AtomicReference<Exception> mDownloaderThreadException;
     private ArrayList<DownloaderTask> mScheduledDownloadTasks;
     private ArrayList<File> mDeclaredNatives;
+    private NativesExtractor mNativesExtractor;
+    private ThreadPoolExecutor mNativesExtractionPool;
+    private AtomicInteger mExtractedNativesCounter;
     private AtomicLong mProcessedFileCounter;
     private AtomicLong mProcessedSizeCounter; // Total bytes of processed files (passed SHA1 or downloaded)
     private AtomicLong mInternetUsageCounter; // How many bytes downloaded over Internet
     private long mTotalFileCount;
-    private long mTotalSize;
+    private AtomicLong mTotalSize; // Grows as the sizes of files become known
     private File mSourceJarFile; // The source client JAR picked during the inheritance process
     private File mTargetJarFile; // The destination client JAR to which the source will be copied to.
-    private boolean mUseFileCounter; // Whether a file counter or a size counter should be used for progress
+    private volatile boolean mUseFileCounter; // Whether a file counter or a size counter should be used for progress
+    private volatile boolean mFilesChanged; // Whether any file was downloaded during this session
+    private VerificationIndex mVerificationIndex;
+    private DownloadScheduler mDownloadScheduler;
 
     private static final ThreadLocal<byte[]> sThreadLocalDownloadBuffer = new ThreadLocal<>();
 
@@ -94,42 +103,71 @@ public class MinecraftDownloader {
         mProcessedFileCounter = new AtomicLong(0);
         mProcessedSizeCounter = new AtomicLong(0);
         mInternetUsageCounter = new AtomicLong(0);
+        mTotalSize = new AtomicLong(0);
         mDownloaderThreadException = new AtomicReference<>(null);
         mUseFileCounter = false;
+        mFilesChanged = false;
+        mVerificationIndex = VerificationIndex.load();
+        mExtractedNativesCounter = new AtomicInteger(0);
 
         if(!downloadAndProcessMetadata(activity, verInfo, versionName)) {
             throw new RuntimeException(activity.getString(R.string.exception_failed_to_unpack_jre17));
         }
+        prepareNativesExtraction(versionName);
 
-        ArrayBlockingQueue<Runnable> taskQueue =
-                new ArrayBlockingQueue<>(mScheduledDownloadTasks.size(), false);
-        ThreadPoolExecutor downloaderPool =
-                new ThreadPoolExecutor(4, 4, 500, TimeUnit.MILLISECONDS, taskQueue);
-
-        // I have tried pre-filling the queue directly instead of doing this, but it didn't work.
-        // What a shame.
-        for(DownloaderTask scheduledTask : mScheduledDownloadTasks) downloaderPool.execute(scheduledTask);
-        downloaderPool.shutdown();
+        mDownloadScheduler = new DownloadScheduler();
+        for(DownloaderTask scheduledTask : mScheduledDownloadTasks)
+            mDownloadScheduler.execute(scheduledTask, scheduledTask.getDownloadSize());
+        mDownloadScheduler.shutdown();
+        ThreadPoolExecutor sizeProbePool = startSizeProbes();
 
         try {
             while (mDownloaderThreadException.get() == null &&
-                    !downloaderPool.awaitTermination(33, TimeUnit.MILLISECONDS)) {
+                    !mDownloadScheduler.awaitTermination(33, TimeUnit.MILLISECONDS)) {
                 double speed = speedCalculator.feed(mInternetUsageCounter.get()) / ONE_MEGABYTE;
+                mDownloadScheduler.feedThroughput(speed);
                 if(mUseFileCounter) reportProgressFileCounter(speed);
                 else reportProgressSizeCounter(speed);
             }
+            if(mDownloaderThreadException.get() == null) awaitNativesExtraction();
             Exception thrownException = mDownloaderThreadException.get();
             if(thrownException != null) {
                 throw thrownException;
             } else {
                 ensureJarFileCopy();
-                extractNatives(versionName);
             }
+            // Cached classpaths may refer to libraries that were missing before
+            if(mFilesChanged) LaunchClasspathCache.invalidate();
         }catch (InterruptedException e) {
             // Interrupted while waiting, which means that the download was cancelled.
             // Kill all downloading threads immediately, and ignore any exceptions thrown by them
-            downloaderPool.shutdownNow();
+            mDownloadScheduler.shutdownNow();
+        }finally {
+            if(mNativesExtractionPool != null) mNativesExtractionPool.shutdownNow();
+            // Any probe that is still running is useless now
+            sizeProbePool.shutdownNow();
+            mVerificationIndex.save();
+        }
+    }
+
+    /**
+     * Start asynchronous HEAD requests for the sizes of all scheduled files that didn't have one
+     * declared in the metadata. The total size grows as the answers arrive. Files that start
+     * downloading before their probe completes take their size from the download response instead.
+     * @return the pool running the probes
+     */
+    private ThreadPoolExecutor startSizeProbes() {
+        ArrayList<DownloaderTask> unsizedTasks = new ArrayList<>();
+        for(DownloaderTask scheduledTask : mScheduledDownloadTasks) {
+            if(!scheduledTask.isSizeKnown()) unsizedTasks.add(scheduledTask);
         }
+        ThreadPoolExecutor sizeProbePool = new ThreadPoolExecutor(SIZE_PROBE_THREADS, SIZE_PROBE_THREADS,
+                500, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(unsizedTasks.size(), 1)));
+        for(DownloaderTask unsizedTask : unsizedTasks) sizeProbePool.execute(unsizedTask::probeSize);
+        sizeProbePool.shutdown();
+        if(!unsizedTasks.isEmpty())
+            Log.i("MinecraftDownloader", "Probing sizes of "+unsizedTasks.size()+" files");
+        return sizeProbePool;
     }
 
     private void reportProgressFileCounter(double speed) {
@@ -142,9 +180,11 @@ public class MinecraftDownloader {
 
     private void reportProgressSizeCounter(double speed) {
         long dlFileSize = mProcessedSizeCounter.get();
+        long totalSize = mTotalSize.get();
         double dlSizeMegabytes = (double) dlFileSize / ONE_MEGABYTE;
-        double dlTotalMegabytes = (double) mTotalSize / ONE_MEGABYTE;
-        int progress = (int)((dlFileSize * 100L) / mTotalSize);
+        double dlTotalMegabytes = (double) totalSize / ONE_MEGABYTE;
+        // The total may still be 0 if none of the file sizes are known yet
+        int progress = totalSize == 0 ? 0 : (int)((dlFileSize * 100L) / totalSize);
         ProgressLayout.setProgress(ProgressLayout.DOWNLOAD_MINECRAFT, progress,
                 R.string.newdl_downloading_game_files_size, dlSizeMegabytes, dlTotalMegabytes, speed);
     }
@@ -171,23 +211,49 @@ public class MinecraftDownloader {
         org.apache.commons.io.FileUtils.copyFile(mSourceJarFile, mTargetJarFile, false);
     }
 
-    private void extractNatives(String versionName) throws IOException {
+    /**
+     * Set up the natives extractor, so that native archives can be extracted as soon as their
+     * downloads finish, in parallel with the rest of the downloads.
+     * @param versionName the version ID, used to pick the natives directory
+     * @throws IOException if the natives directory can't be created
+     */
+    private void prepareNativesExtraction(String versionName) throws IOException {
         if(mDeclaredNatives.isEmpty()) return;
-        int totalCount = mDeclaredNatives.size();
-
-        ProgressLayout.setProgress(ProgressLayout.DOWNLOAD_MINECRAFT, 0,
-                R.string.newdl_extracting_native_libraries, 0, totalCount);
-
         File targetDirectory = new File(Tools.DIR_CACHE, "natives/"+versionName);
         FileUtils.ensureDirectory(targetDirectory);
-        NativesExtractor nativesExtractor = new NativesExtractor(targetDirectory);
-        int extractedCount = 0;
-        for(File source : mDeclaredNatives) {
-            nativesExtractor.extractFromAar(source);
-            extractedCount++;
+        mNativesExtractor = new NativesExtractor(targetDirectory);
+        mNativesExtractionPool = new ThreadPoolExecutor(2, 2, 500, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(mDeclaredNatives.size()));
+    }
+
+    private void scheduleNativesExtraction(File source, String sourceSha1) {
+        mNativesExtractionPool.execute(() -> {
+            try {
+                // Downloads of native archives are allowed to fail
+                if(source.isFile()) mNativesExtractor.extractFromAar(source, sourceSha1);
+                mExtractedNativesCounter.incrementAndGet();
+            }catch (Exception e) {
+                mDownloaderThreadException.set(e);
+            }
+        });
+    }
+
+    /**
+     * Wait for the extraction of natives that were scheduled during the download to finish.
+     * @throws IOException if the extraction manifest can't be saved
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void awaitNativesExtraction() throws IOException, InterruptedException {
+        if(mNativesExtractionPool == null) return;
+        mNativesExtractionPool.shutdown();
+        int totalCount = mDeclaredNatives.size();
+        while(mDownloaderThreadException.get() == null &&
+                !mNativesExtractionPool.awaitTermination(33, TimeUnit.MILLISECONDS)) {
+            int extractedCount = mExtractedNativesCounter.get();
             ProgressLayout.setProgress(ProgressLayout.DOWNLOAD_MINECRAFT, extractedCount * 100 / totalCount,
                     R.string.newdl_extracting_native_libraries, extractedCount, totalCount);
         }
+        mNativesExtractor.saveManifest();
     }
 
     private File downloadGameJson(JMinecraftVersionList.Version verInfo) throws IOException, MirrorTamperedException {
@@ -220,7 +286,7 @@ public class MinecraftDownloader {
             DownloadMirror.downloadFileMirrored(DownloadMirror.DOWNLOAD_CLASS_METADATA, assetIndex.url, targetFile);
             return null;
         });
-        return Tools.GLOBAL_GSON.fromJson(Tools.read(targetFile), JAssets.class);
+        return Tools.readJson(targetFile, JAssets.class);
     }
     
     private MinecraftClientInfo getClientInfo(JMinecraftVersionList.Version verInfo) {
@@ -243,7 +309,7 @@ public class MinecraftDownloader {
         if(verInfo != null) versionJsonFile = downloadGameJson(verInfo);
         else versionJsonFile = createGameJsonPath(versionName);
         if(versionJsonFile.canRead())  {
-            verInfo = Tools.GLOBAL_GSON.fromJson(Tools.read(versionJsonFile), JMinecraftVersionList.Version.class);
+            verInfo = Tools.readJson(versionJsonFile, JMinecraftVersionList.Version.class);
         } else {
             throw new IOException("Unable to read Version JSON for version " + versionName);
         }
@@ -275,26 +341,15 @@ public class MinecraftDownloader {
         mScheduledDownloadTasks.ensureCapacity(mScheduledDownloadTasks.size() + addedElementCount);
     }
 
-    private void scheduleDownload(File targetFile, int downloadClass, String url, String sha1,
+    private DownloaderTask scheduleDownload(File targetFile, int downloadClass, String url, String sha1,
                                   long size, boolean skipIfFailed) throws IOException {
         FileUtils.ensureParentDirectory(targetFile);
         mTotalFileCount++;
-        // Only attempt to check size if we still use the size counter and didn't switch to file counter.
-        if(size <= 0 && !mUseFileCounter) {
-            size = DownloadMirror.getContentLengthMirrored(downloadClass, url);
-        }
-        if(size < 0) {
-            // If we were unable to get the content length ourselves, we automatically fall back
-            // to tracking the progress using the file counter.
-            size = 0;
-            mUseFileCounter = true;
-            Log.i("MinecraftDownloader", "Failed to determine size of "+targetFile.getName()+", switching to file counter");
-        }else {
-            mTotalSize += size;
-        }
-        mScheduledDownloadTasks.add(
-                new DownloaderTask(targetFile, downloadClass, url, sha1, size, skipIfFailed)
-        );
+        DownloaderTask downloaderTask = new DownloaderTask(targetFile, downloadClass, url, sha1, skipIfFailed);
+        // Files without a declared size get it later from startSizeProbes() or from the download itself
+        if(size > 0) downloaderTask.reportSize(size);
+        mScheduledDownloadTasks.add(downloaderTask);
+        return downloaderTask;
     }
 
     /**
@@ -309,7 +364,8 @@ public class MinecraftDownloader {
         String downloadUrl = baseRepository + path;
         File targetPath = new File(Tools.DIR_HOME_LIBRARY, path);
         mDeclaredNatives.add(targetPath);
-        scheduleDownload(targetPath, DownloadMirror.DOWNLOAD_CLASS_LIBRARIES, downloadUrl, null, 0, true);
+        scheduleDownload(targetPath, DownloadMirror.DOWNLOAD_CLASS_LIBRARIES, downloadUrl, null, 0, true)
+                .mExtractNatives = true;
     }
 
     private void scheduleLibraryDownloads(DependentLibrary[] dependentLibraries) throws IOException {
@@ -425,18 +481,49 @@ public class MinecraftDownloader {
         private final int mDownloadClass;
         private final boolean mSkipIfFailed;
         private int mLastCurr;
-        private final long mDownloadSize;
+        // The size of the download in bytes, or -1 while it is unknown
+        private final AtomicLong mDownloadSize = new AtomicLong(-1);
+        private boolean mExtractNatives;
 
         DownloaderTask(File targetPath, int downloadClass, String targetUrl, String targetSha1,
-                       long downloadSize, boolean skipIfFailed) {
+                       boolean skipIfFailed) {
             this.mTargetPath = targetPath;
             this.mTargetUrl = targetUrl;
             this.mTargetSha1 = targetSha1;
             this.mDownloadClass = downloadClass;
-            this.mDownloadSize = downloadSize;
             this.mSkipIfFailed = skipIfFailed;
         }
 
+        boolean isSizeKnown() {
+            return mDownloadSize.get() >= 0;
+        }
+
+        /** @return the size of the download in bytes, or 0 if it is not known yet */
+        long getDownloadSize() {
+            return Math.max(mDownloadSize.get(), 0);
+        }
+
+        /**
+         * Set the size of this download and add it to the total size. Only the first valid size
+         * reported for a task is taken into account.
+         * @param size the size in bytes, or a negative value if unknown
+         */
+        void reportSize(long size) {
+            // The size is published in the same step that marks it as known
+            if(size < 0 || !mDownloadSize.compareAndSet(-1, size)) return;
+            mTotalSize.addAndGet(size);
+        }
+
+        void probeSize() {
+            if(isSizeKnown()) return;
+            try {
+                reportSize(DownloadMirror.getContentLengthMirrored(mDownloadClass, mTargetUrl));
+            }catch (IOException e) {
+                // Not fatal, the size can still be determined when downloading
+                Log.i("MinecraftDownloader", "Failed to probe size of "+mTargetPath.getName(), e);
+            }
+        }
+
         private String downloadSha1() throws IOException {
             String downloadedHash = DownloadMirror.downloadStringMirrored(
                     mDownloadClass, mTargetUrl + ".sha1"
@@ -475,6 +562,7 @@ public class MinecraftDownloader {
         public void run() {
             try {
                 runCatching();
+                if(mExtractNatives) scheduleNativesExtraction(mTargetPath, mTargetSha1);
             }catch (Exception e) {
                 mDownloaderThreadException.set(e);
             }
@@ -496,7 +584,7 @@ public class MinecraftDownloader {
         }
         
         private void verifyFileSha1() throws Exception {
-            if(mTargetPath.isFile() && mTargetPath.canRead() && Tools.compareSHA1(mTargetPath, mTargetSha1)) {
+            if(mTargetPath.isFile() && mTargetPath.canRead() && isFileSha1Valid()) {
                 finishWithoutDownloading();
             } else {
                 // Rely on the download function to throw an IOE in case if the file is not
@@ -505,26 +593,53 @@ public class MinecraftDownloader {
             }
         }
         
+        /**
+         * Check the file against the target SHA1. Unless deep verification is enabled, files that
+         * were not changed since their last successful verification are not hashed again.
+         * @return whether the file matches the target SHA1
+         */
+        private boolean isFileSha1Valid() {
+            if(!LauncherPreferences.PREF_DEEP_VERIFY && mVerificationIndex.isVerified(mTargetPath, mTargetSha1))
+                return true;
+            if(!Tools.compareSHA1(mTargetPath, mTargetSha1)) return false;
+            mVerificationIndex.markVerified(mTargetPath, mTargetSha1);
+            return true;
+        }
+
         private void downloadFile() throws Exception {
             try {
                 DownloadUtils.ensureSha1(mTargetPath, mTargetSha1, () -> {
+                    // Report against the URL that was actually used, which may be on a mirror
                     DownloadMirror.downloadFileMirrored(mDownloadClass, mTargetUrl, mTargetPath,
-                            getLocalBuffer(), this);
+                            getLocalBuffer(), this, mDownloadScheduler::reportResult);
                     return null;
                 });
+                // ensureSha1 only returns normally if the downloaded file matches the hash
+                if(mTargetSha1 != null) mVerificationIndex.markVerified(mTargetPath, mTargetSha1);
+                mFilesChanged = true;
             }catch (Exception e) {
                 if(!mSkipIfFailed) throw e;
             }
+            if(!isSizeKnown()) {
+                // Neither the metadata, the size probe nor the server could tell the size of this
+                // file. Fall back to tracking the progress using the file counter.
+                mUseFileCounter = true;
+                Log.i("MinecraftDownloader", "Failed to determine size of "+mTargetPath.getName()+", switching to file counter");
+            }
             mProcessedFileCounter.incrementAndGet();
         }
 
         private void finishWithoutDownloading() {
+            // The local file is valid, so its length is as good as the remote one
+            reportSize(mTargetPath.length());
             mProcessedFileCounter.incrementAndGet();
-            mProcessedSizeCounter.addAndGet(mDownloadSize);
+            mProcessedSizeCounter.addAndGet(getDownloadSize());
         }
 
         @Override
         public void updateProgress(int curr, int max) {
+            // Report the size before the progress, to avoid the processed size overtaking the total
+            reportSize(max);
             int delta = curr - mLastCurr;
             mProcessedSizeCounter.addAndGet(delta);
             mInternetUsageCounter.addAndGet(delta);
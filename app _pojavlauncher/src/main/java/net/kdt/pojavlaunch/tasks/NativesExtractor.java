@@ -1,5 +1,12 @@
 package net.kdt.pojavlaunch.tasks;
 
+import android.util.Log;
+
+import androidx.annotation.Keep;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonParseException;
+
 import net.kdt.pojavlaunch.Architecture;
 import net.kdt.pojavlaunch.Tools;
 import net.kdt.pojavlaunch.utils.FileUtils;
@@ -10,18 +17,50 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class NativesExtractor {
-    private static final ArrayList<String> LIBRARY_BLACKLIST = createLibraryBlacklist();
+    private static final HashSet<String> LIBRARY_BLACKLIST = createLibraryBlacklist();
+    private static final String MANIFEST_FILE_NAME = "extraction_manifest.json";
     private final File mDestinationDir;
     private final String mLibraryLocation;
+    private final File mManifestFile;
+    private final ExtractionManifest mManifest;
 
     public NativesExtractor(File mDestinationDir) {
         this.mDestinationDir = mDestinationDir;
         this.mLibraryLocation = "jni/"+getAarArchitectureName()+"/";
+        this.mManifestFile = new File(mDestinationDir, MANIFEST_FILE_NAME);
+        this.mManifest = loadManifest(mManifestFile);
+    }
+
+    private static ExtractionManifest loadManifest(File manifestFile) {
+        if(manifestFile.isFile()) try {
+            ExtractionManifest manifest = Tools.readJson(manifestFile, ExtractionManifest.class);
+            if(manifest != null && manifest.archives != null) return manifest;
+        }catch (IOException | JsonParseException e) {
+            Log.w("NativesExtractor", "Failed to read the extraction manifest", e);
+        }
+        ExtractionManifest manifest = new ExtractionManifest();
+        manifest.archives = new HashMap<>();
+        return manifest;
+    }
+
+    /**
+     * Save the extraction manifest, so that unchanged archives can be skipped next time.
+     * @throws IOException if the manifest can't be written
+     */
+    public void saveManifest() throws IOException {
+        String manifestJson;
+        synchronized (mManifest) {
+            manifestJson = Tools.GLOBAL_GSON.toJson(mManifest);
+        }
+        Tools.write(mManifestFile.getAbsolutePath(), manifestJson);
     }
 
     /**
@@ -29,15 +68,14 @@ public class NativesExtractor {
      * override built-in libraries.
      * @return the resulting blacklist of library file names
      */
-    private static ArrayList<String> createLibraryBlacklist() {
+    private static HashSet<String> createLibraryBlacklist() {
         String[] includedLibraryNames = new File(Tools.NATIVE_LIB_DIR).list();
-        ArrayList<String> blacklist = new ArrayList<>(includedLibraryNames.length);
+        HashSet<String> blacklist = new HashSet<>(includedLibraryNames.length * 2);
         for(String libraryName : includedLibraryNames) {
             // allow overriding jnidispatch (as the integrated version may be too old)
             if(libraryName.equals("libjnidispatch.so")) continue;
             blacklist.add(libraryName);
         }
-        blacklist.trimToSize();
         return blacklist;
     }
 
@@ -56,7 +94,47 @@ public class NativesExtractor {
         throw new RuntimeException("Unknown CPU architecture: "+architecture);
     }
 
-    public void extractFromAar(File source) throws IOException {
+    /**
+     * Extract the natives for the current architecture from an AAR. If the manifest says that
+     * this exact archive was already extracted and all of its libraries are still in place,
+     * the archive is not opened at all.
+     * This method can be called from multiple threads at once.
+     * @param source the AAR file
+     * @param sourceSha1 the SHA1 of the AAR, if known
+     * @throws IOException if the extraction fails
+     */
+    public void extractFromAar(File source, @Nullable String sourceSha1) throws IOException {
+        String archiveKey = source.getAbsolutePath();
+        // If the hash is not known, fall back to the file stats to detect changes
+        String fingerprint = sourceSha1 != null ? sourceSha1 : source.length() + ":" + source.lastModified();
+        ArchiveRecord previousRecord;
+        synchronized (mManifest) {
+            previousRecord = mManifest.archives.get(archiveKey);
+        }
+        if(previousRecord != null && previousRecord.fingerprint.equals(fingerprint) && isExtracted(previousRecord)) {
+            return;
+        }
+        ArchiveRecord archiveRecord = new ArchiveRecord();
+        archiveRecord.fingerprint = fingerprint;
+        extractFromAar(source, archiveRecord);
+        synchronized (mManifest) {
+            mManifest.archives.put(archiveKey, archiveRecord);
+        }
+    }
+
+    private boolean isExtracted(ArchiveRecord record) {
+        if(record.entryNames == null || record.entrySizes == null
+                || record.entryNames.length != record.entrySizes.length) return false;
+        for(int i = 0; i < record.entryNames.length; i++) {
+            File extractedFile = new File(mDestinationDir, record.entryNames[i]);
+            if(extractedFile.length() != record.entrySizes[i]) return false;
+        }
+        return true;
+    }
+
+    private void extractFromAar(File source, ArchiveRecord archiveRecord) throws IOException {
+        ArrayList<String> entryNames = new ArrayList<>();
+        ArrayList<Long> entrySizes = new ArrayList<>();
         byte[] buffer = new byte[8192];
         try (FileInputStream fileInputStream = new FileInputStream(source);
              ZipInputStream zipInputStream = new ZipInputStream(fileInputStream)) {
@@ -72,9 +150,15 @@ public class NativesExtractor {
                 // getFileName may make the file name null, avoid that case.
                 if(entryName == null || LIBRARY_BLACKLIST.contains(entryName)) continue;
 
-                processEntry(entryCopyStream, entry, new File(mDestinationDir, entryName), buffer);
+                File entryDestination = new File(mDestinationDir, entryName);
+                processEntry(entryCopyStream, entry, entryDestination, buffer);
+                entryNames.add(entryName);
+                entrySizes.add(entryDestination.length());
             }
         }
+        archiveRecord.entryNames = entryNames.toArray(new String[0]);
+        archiveRecord.entrySizes = new long[entrySizes.size()];
+        for(int i = 0; i < archiveRecord.entrySizes.length; i++) archiveRecord.entrySizes[i] = entrySizes.get(i);
     }
 
     private static long fileCrc32(File target, byte[] buffer) throws IOException {
@@ -102,6 +186,18 @@ public class NativesExtractor {
     }
 
 
+    @Keep
+    private static class ExtractionManifest {
+        Map<String, ArchiveRecord> archives;
+    }
+
+    @Keep
+    private static class ArchiveRecord {
+        String fingerprint;
+        String[] entryNames;
+        long[] entrySizes;
+    }
+
     private static class NonCloseableInputStream extends FilterInputStream {
 
         protected NonCloseableInputStream(InputStream in) {
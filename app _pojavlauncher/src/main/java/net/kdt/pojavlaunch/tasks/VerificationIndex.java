@@ -0,0 +1,126 @@
+package net.kdt.pojavlaunch.tasks;
+
+import android.util.Log;
+
+import net.kdt.pojavlaunch.Tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent index of files that already passed SHA1 verification. Each entry remembers the
+ * size and modification time of the file at the moment it was verified, so that a file which
+ * was not touched since then can be accepted without hashing it again.
+ */
+public class VerificationIndex {
+    private static final int INDEX_VERSION = 1;
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private volatile boolean mModified;
+
+    /**
+     * Load the index from the cache directory. If the index can't be read, an empty one is returned.
+     * @return the loaded index
+     */
+    public static VerificationIndex load() {
+        VerificationIndex index = new VerificationIndex();
+        File indexFile = getIndexFile();
+        if(!indexFile.isFile()) return index;
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if(inputStream.readInt() != INDEX_VERSION) return index;
+            int entryCount = inputStream.readInt();
+            for(int i = 0; i < entryCount; i++) {
+                String path = inputStream.readUTF();
+                long size = inputStream.readLong();
+                long lastModified = inputStream.readLong();
+                String sha1 = inputStream.readUTF();
+                index.mEntries.put(path, new Entry(size, lastModified, sha1));
+            }
+        }catch (IOException e) {
+            Log.w("VerificationIndex", "Failed to load the verification index", e);
+            index.mEntries.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Check if a file was already verified against a hash and was not changed since.
+     * @param file the file to check
+     * @param sha1 the expected SHA1 of the file
+     * @return true if the file is known to match the hash, false if it needs to be hashed
+     */
+    public boolean isVerified(File file, String sha1) {
+        Entry entry = mEntries.get(file.getAbsolutePath());
+        if(entry == null) return false;
+        return entry.sha1.equalsIgnoreCase(sha1) &&
+                entry.size == file.length() &&
+                entry.lastModified == file.lastModified();
+    }
+
+    /**
+     * Record that a file has passed verification against a hash in its current state.
+     * @param file the verified file
+     * @param sha1 the hash that the file matched
+     */
+    public void markVerified(File file, String sha1) {
+        mEntries.put(file.getAbsolutePath(), new Entry(file.length(), file.lastModified(), sha1));
+        mModified = true;
+    }
+
+    /**
+     * Write the index back into the cache directory, if it was modified since it was loaded.
+     * The index is first written to a temporary file to avoid leaving a truncated index behind.
+     */
+    public void save() {
+        if(!mModified) return;
+        File indexFile = getIndexFile();
+        File tempFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                // Take a snapshot so that the entry count matches the written entries
+                ArrayList<Map.Entry<String, Entry>> entries = new ArrayList<>(mEntries.entrySet());
+                outputStream.writeInt(INDEX_VERSION);
+                outputStream.writeInt(entries.size());
+                for(Map.Entry<String, Entry> mapEntry : entries) {
+                    Entry entry = mapEntry.getValue();
+                    outputStream.writeUTF(mapEntry.getKey());
+                    outputStream.writeLong(entry.size);
+                    outputStream.writeLong(entry.lastModified);
+                    outputStream.writeUTF(entry.sha1);
+                }
+            }
+            if(!tempFile.renameTo(indexFile)) throw new IOException("Failed to move the index into place");
+            mModified = false;
+        }catch (IOException e) {
+            Log.w("VerificationIndex", "Failed to save the verification index", e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    private static File getIndexFile() {
+        return new File(Tools.DIR_CACHE, "verification_index.bin");
+    }
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final String sha1;
+
+        Entry(long size, long lastModified, String sha1) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package net.kdt.pojavlaunch.utils;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import net.kdt.pojavlaunch.PojavApplication;
+import net.kdt.pojavlaunch.Tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A content-addressed file store, keyed by SHA1. Files are shared between game instances by
+ * hardlinking them into and out of the store. Files are never copied into or out of the store:
+ * if the file system does not support hardlinks (like shared external storage), the store stays
+ * empty and costs no space.
+ * The store is kept in the game directory, so that it's on the same file system as the instances.
+ * Since instance files share their data with the store, a file edited in place changes the stored
+ * copy too. Restored files are checked against their hash by the callers for that reason.
+ */
+public class BlobStore {
+    private static final long GARBAGE_COLLECTION_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    private static final AtomicBoolean sLinkingUnsupportedLogged = new AtomicBoolean(false);
+
+    private static File getStoreDirectory() {
+        return new File(Tools.DIR_GAME_HOME, "blobs");
+    }
+
+    private static File getBlobFile(String sha1) {
+        String hash = sha1.toLowerCase(Locale.ROOT);
+        return new File(getStoreDirectory(), hash.substring(0, 2) + "/" + hash);
+    }
+
+    private static boolean isValidHash(String sha1) {
+        return sha1 != null && sha1.length() == 40;
+    }
+
+    /**
+     * Place a file from the store at the destination, if the store has a file with this hash.
+     * Note that the destination may become a hardlink to the stored file, so it must be replaced
+     * and not overwritten in place if it needs to be changed.
+     * @param sha1 the SHA1 of the wanted file
+     * @param destination the place where the file should be put
+     * @return true if the file was placed at the destination, false otherwise
+     */
+    public static boolean restore(String sha1, File destination) {
+        if(!isValidHash(sha1) || destination.exists()) return false;
+        File blobFile = getBlobFile(sha1);
+        if(!blobFile.isFile()) return false;
+        try {
+            FileUtils.ensureParentDirectory(destination);
+            Os.link(blobFile.getAbsolutePath(), destination.getAbsolutePath());
+            return true;
+        }catch (ErrnoException e) {
+            logLinkFailure("Failed to restore " + destination.getName() + " from the store", e);
+            return false;
+        }catch (IOException e) {
+            Log.w("BlobStore", "Failed to restore " + destination.getName() + " from the store", e);
+            return false;
+        }
+    }
+
+    /**
+     * Add a file to the store, unless a file with the same hash is already stored.
+     * The file is only added if it can be hardlinked into the store.
+     * The caller must ensure that the file actually matches the hash.
+     * @param sha1 the SHA1 of the file
+     * @param source the file to add
+     */
+    public static void store(String sha1, File source) {
+        if(!isValidHash(sha1) || !source.isFile()) return;
+        File blobFile = getBlobFile(sha1);
+        if(blobFile.exists()) return;
+        // Several instances may try to store the same file at the same time, so put it in
+        // place atomically.
+        File tempFile = new File(blobFile.getAbsolutePath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            FileUtils.ensureParentDirectory(blobFile);
+            Os.link(source.getAbsolutePath(), tempFile.getAbsolutePath());
+            if(!tempFile.renameTo(blobFile)) throw new IOException("Failed to move the blob into place");
+        }catch (ErrnoException e) {
+            logLinkFailure("Failed to store " + source.getName(), e);
+        }catch (IOException e) {
+            Log.w("BlobStore", "Failed to store " + source.getName(), e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Remove a stored file, for example because its contents don't match its hash anymore.
+     * The instance files that are linked to it are not affected.
+     * @param sha1 the SHA1 of the stored file
+     */
+    public static void discard(String sha1) {
+        if(!isValidHash(sha1)) return;
+        //noinspection ResultOfMethodCallIgnored
+        getBlobFile(sha1).delete();
+    }
+
+    private static void logLinkFailure(String message, ErrnoException e) {
+        if(e.errno != OsConstants.EXDEV && e.errno != OsConstants.EPERM) {
+            Log.w("BlobStore", message, e);
+            return;
+        }
+        // These happen for every file on file systems without hardlinks, so only tell once
+        if(sLinkingUnsupportedLogged.compareAndSet(false, true)) {
+            Log.i("BlobStore", "Hardlinks are not supported here (" + e.getMessage() + "), the blob store is inactive");
+        }
+    }
+
+    /**
+     * Remove the unused stored files in the background, if that wasn't done for a day.
+     * Checking every stored file is too slow to be done after every install, and files only
+     * become unused when instances are updated or deleted.
+     */
+    public static void collectGarbageIfDue() {
+        File storeDirectory = getStoreDirectory();
+        if(!storeDirectory.isDirectory()) return;
+        File collectionMarker = new File(storeDirectory, ".last_collection");
+        long now = System.currentTimeMillis();
+        if(now - collectionMarker.lastModified() < GARBAGE_COLLECTION_INTERVAL) return;
+        try {
+            if(!collectionMarker.createNewFile() && !collectionMarker.setLastModified(now)) return;
+        }catch (IOException e) {
+            Log.w("BlobStore", "Failed to mark the garbage collection", e);
+            return;
+        }
+        PojavApplication.sExecutorService.execute(BlobStore::collectGarbage);
+    }
+
+    /**
+     * Remove the stored files that are not used by any instance anymore, that is the ones that
+     * are only linked from the store itself.
+     */
+    private static void collectGarbage() {
+        File[] blobDirectories = getStoreDirectory().listFiles();
+        if(blobDirectories == null) return;
+        int removedBlobs = 0;
+        for(File blobDirectory : blobDirectories) {
+            File[] blobFiles = blobDirectory.listFiles();
+            if(blobFiles == null) continue;
+            for(File blobFile : blobFiles) {
+                try {
+                    if(Os.stat(blobFile.getAbsolutePath()).st_nlink > 1) continue;
+                }catch (ErrnoException e) {
+                    continue;
+                }
+                if(blobFile.delete()) removedBlobs++;
+            }
+        }
+        if(removedBlobs > 0) Log.i("BlobStore", "Removed " + removedBlobs + " unused blobs");
+    }
+}
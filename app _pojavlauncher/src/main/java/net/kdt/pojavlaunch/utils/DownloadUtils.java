@@ -2,12 +2,17 @@ package net.kdt.pojavlaunch.utils;
 
 import android.util.Log;
 
+import androidx.annotation.Keep;
 import androidx.annotation.Nullable;
 
 import java.io.*;
 import java.net.*;
 import java.nio.charset.*;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.kdt.pojavlaunch.*;
 import org.apache.commons.io.*;
@@ -15,6 +20,14 @@ import org.apache.commons.io.*;
 @SuppressWarnings("IOStreamConstructor")
 public class DownloadUtils {
     public static final String USER_AGENT = Tools.APP_NAME;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final long RETRY_BASE_DELAY_MS = 500;
+    // Keyed by the absolute path of the ".part" file
+    private static final Map<String, PartialDownload> sPartialDownloads = new ConcurrentHashMap<>();
+    private static final long STRING_CACHE_MAX_AGE = 86400000; // A day
+    private static final long STRING_CACHE_MAX_STALE_AGE = 604800000; // A week
+    // The absolute paths of the cached strings being revalidated in the background
+    private static final Set<String> sRevalidatingCaches = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     public static void download(String url, OutputStream os) throws IOException {
         download(new URL(url), os);
@@ -62,62 +75,311 @@ public class DownloadUtils {
         }
     }
 
+    /**
+     * Download a file while reporting the progress to a monitor. The data is first written into
+     * a ".part" file next to the output, which is renamed to the output file once the download is
+     * complete. If a previous attempt for the same URL was interrupted, the download is resumed
+     * from the end of the ".part" file using a Range request, guarded by If-Range so that the
+     * server sends the whole file again if it has changed in the meantime.
+     * The connection is not explicitly disconnected, which allows the underlying socket to
+     * go back into the keep-alive pool of HttpURLConnection and be reused for the next file
+     * from the same host.
+     * @param urlInput the URL to download from
+     * @param outputFile the destination file
+     * @param buffer the buffer to use for copying, or null to allocate a new one
+     * @param monitor the progress monitor. The progress is reported relative to the whole file,
+     *                including the part that was resumed.
+     * @throws IOException if the download fails
+     */
     public static void downloadFileMonitored(String urlInput, File outputFile, @Nullable byte[] buffer,
                                              Tools.DownloaderFeedback monitor) throws IOException {
         FileUtils.ensureParentDirectory(outputFile);
+        File partFile = new File(outputFile.getAbsolutePath() + ".part");
+        PartialDownload partialDownload = sPartialDownloads.remove(partFile.getAbsolutePath());
+        long resumeOffset = 0;
+        if(partialDownload != null && partialDownload.url.equals(urlInput) && partFile.isFile())
+            resumeOffset = partFile.length();
 
         HttpURLConnection conn = (HttpURLConnection) new URL(urlInput).openConnection();
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        conn.setConnectTimeout(10000);
+        if(resumeOffset > 0) {
+            conn.setRequestProperty("Range", "bytes=" + resumeOffset + "-");
+            conn.setRequestProperty("If-Range", partialDownload.validator);
+        }
+
+        int responseCode = conn.getResponseCode();
+        if(resumeOffset > 0 && (responseCode == HTTP_RANGE_NOT_SATISFIABLE ||
+                (responseCode == HttpURLConnection.HTTP_PARTIAL && getRangeStart(conn) != resumeOffset))) {
+            // The partial file does not match what the server has. Throw it away and start over.
+            Log.i("DownloadUtils", "Server rejected resume of " + outputFile.getName() + ", restarting");
+            drainQuietly(conn);
+            if(!partFile.delete()) throw new IOException("Failed to delete " + partFile.getName());
+            downloadFileMonitored(urlInput, outputFile, buffer, monitor);
+            return;
+        }
+        if(responseCode < 200 || responseCode > 299) {
+            // Read out the error body, so that the connection can be reused
+            drainQuietly(conn);
+            // DownloadMirror relies on a FileNotFoundException on 404
+            if(responseCode == HttpURLConnection.HTTP_NOT_FOUND) throw new FileNotFoundException(urlInput);
+            throw new HttpStatusException(responseCode, "Server returned HTTP " + responseCode + " for " + urlInput);
+        }
+        boolean append = resumeOffset > 0 && responseCode == HttpURLConnection.HTTP_PARTIAL;
+        if(!append) resumeOffset = 0;
+
         InputStream readStr = conn.getInputStream();
-        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+        String validator = getResumeValidator(conn);
+        long overall = resumeOffset;
+        try (FileOutputStream fos = new FileOutputStream(partFile, append)) {
             int current;
-            int overall = 0;
-            int length = conn.getContentLength();
+            long length = conn.getContentLength();
+            if(length != -1) length += resumeOffset;
 
             if (buffer == null) buffer = new byte[65535];
 
             while ((current = readStr.read(buffer)) != -1) {
                 overall += current;
                 fos.write(buffer, 0, current);
-                monitor.updateProgress(overall, length);
+                monitor.updateProgress((int) overall, (int) length);
             }
-            conn.disconnect();
+        } catch (IOException e) {
+            // Remember how to resume the download if it gets retried
+            if(validator != null && overall > 0)
+                sPartialDownloads.put(partFile.getAbsolutePath(), new PartialDownload(urlInput, validator));
+            throw e;
+        } finally {
+            try {
+                readStr.close();
+            } catch (IOException e) {
+                Log.w("DownloadUtils", "Failed to close the download stream", e);
+            }
+        }
+        if(outputFile.exists() && !outputFile.delete())
+            throw new IOException("Failed to replace " + outputFile.getName());
+        if(!partFile.renameTo(outputFile))
+            throw new IOException("Failed to move " + partFile.getName() + " into place");
+    }
+
+    /**
+     * Download a file, unless the server reports that it did not change since the copy described
+     * by the validators. The validators are sent with If-None-Match and If-Modified-Since.
+     * @param url the URL to download from
+     * @param outputFile the file to download into. Left untouched if the file did not change
+     * @param validators the validators of the copy the caller already has, or null if it has none
+     * @return the validators of the downloaded file, or null if the file did not change
+     * @throws IOException if the download fails
+     */
+    public static @Nullable CacheValidators downloadFileIfModified(String url, File outputFile,
+                                                                   @Nullable CacheValidators validators) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        conn.setConnectTimeout(10000);
+        if(validators != null) {
+            if(validators.eTag != null) conn.setRequestProperty("If-None-Match", validators.eTag);
+            if(validators.lastModified != null) conn.setRequestProperty("If-Modified-Since", validators.lastModified);
+        }
+        int responseCode = conn.getResponseCode();
+        if(validators != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            drainQuietly(conn);
+            return null;
+        }
+        if(responseCode != HttpURLConnection.HTTP_OK) {
+            drainQuietly(conn);
+            throw new IOException("Unable to download from " + url + ", server returned HTTP " + responseCode
+                    + ": " + conn.getResponseMessage());
+        }
+        CacheValidators newValidators = new CacheValidators(conn.getHeaderField("ETag"), conn.getHeaderField("Last-Modified"));
+        FileUtils.ensureParentDirectory(outputFile);
+        try (InputStream inputStream = conn.getInputStream();
+             FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+            IOUtils.copy(inputStream, outputStream);
+        }
+        return newValidators;
+    }
+
+    /**
+     * Check whether a download failure means that the server itself is in trouble, as opposed to
+     * a single file being missing or refused.
+     * @param exception the exception the download failed with
+     * @return true for connection failures and 5xx responses
+     */
+    public static boolean isServerFailure(IOException exception) {
+        if(exception instanceof FileNotFoundException) return false;
+        if(exception instanceof HttpStatusException)
+            return ((HttpStatusException) exception).responseCode >= 500;
+        return true;
+    }
+
+    /**
+     * Get a validator that can be used with If-Range to resume a download from this connection.
+     * Weak ETags are not allowed in If-Range, so Last-Modified is used in their place.
+     * @param conn the connection
+     * @return the validator, or null if the server did not provide a usable one
+     */
+    private static String getResumeValidator(HttpURLConnection conn) {
+        String eTag = conn.getHeaderField("ETag");
+        if(eTag != null && !eTag.startsWith("W/")) return eTag;
+        return conn.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Get the first byte position from the Content-Range header of a partial response.
+     * @param conn the connection
+     * @return the position, or -1 if the header is missing or malformed
+     */
+    private static long getRangeStart(HttpURLConnection conn) {
+        String contentRange = conn.getHeaderField("Content-Range");
+        if(contentRange == null || !contentRange.startsWith("bytes ")) return -1;
+        int dashIndex = contentRange.indexOf('-');
+        if(dashIndex == -1) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(6, dashIndex).trim());
+        }catch (NumberFormatException e) {
+            return -1;
         }
+    }
 
+    /**
+     * Read and discard the response body of a connection, so that the underlying socket can be
+     * reused for another request.
+     * @param conn the connection
+     */
+    private static void drainQuietly(HttpURLConnection conn) {
+        try {
+            InputStream stream = conn.getErrorStream();
+            if(stream == null) stream = conn.getInputStream();
+            try (InputStream drainedStream = stream) {
+                IOUtils.skip(drainedStream, Long.MAX_VALUE);
+            }
+        }catch (IOException e) {
+            conn.disconnect();
+        }
     }
 
+    /**
+     * Download a string and parse it, caching the string in the cache directory.
+     * Cached strings are used as-is for a day. After that, the cached string is still returned
+     * right away, and it is revalidated in the background with a conditional request, using the
+     * ETag and Last-Modified headers stored next to it. Strings older than a week are revalidated
+     * before returning, unless the server can't be reached or sends a string that fails to parse.
+     * If the server reports that the string did not change, only the age of the cache entry is
+     * refreshed, and the body is not downloaded again.
+     * @param url the URL to download the string from
+     * @param cacheName the name of the cache entry
+     * @param parseCallback the callback that parses the string. Strings that fail to parse are not cached
+     * @return the parse result
+     */
     public static <T> T downloadStringCached(String url, String cacheName, ParseCallback<T> parseCallback) throws IOException, ParseException{
         File cacheDestination = new File(Tools.DIR_CACHE, "string_cache/"+cacheName);
-        if(cacheDestination.isFile() &&
-                cacheDestination.canRead() &&
-                System.currentTimeMillis() < (cacheDestination.lastModified() + 86400000)) {
+        T cachedResult = null;
+        if(cacheDestination.isFile() && cacheDestination.canRead()) {
             try {
                 String cachedString = Tools.read(new FileInputStream(cacheDestination));
-                return parseCallback.process(cachedString);
+                cachedResult = parseCallback.process(cachedString);
             }catch(IOException e) {
                 Log.i("DownloadUtils", "Failed to read the cached file", e);
             }catch (ParseException e) {
                 Log.i("DownloadUtils", "Failed to parse the cached file", e);
             }
         }
-        String urlContent = DownloadUtils.downloadString(url);
-        // if we download the file and fail parsing it, we will yeet outta there
-        // and not cache the unparseable sting. We will return this after trying to save the downloaded
-        // string into cache
-        T parseResult = parseCallback.process(urlContent);
+        if(cachedResult != null) {
+            long cacheAge = System.currentTimeMillis() - cacheDestination.lastModified();
+            if(cacheAge < STRING_CACHE_MAX_AGE) return cachedResult;
+            if(cacheAge < STRING_CACHE_MAX_STALE_AGE) {
+                revalidateStringCacheAsync(url, cacheDestination, parseCallback);
+                return cachedResult;
+            }
+            try {
+                return revalidateStringCache(url, cacheDestination, cachedResult, parseCallback);
+            }catch (IOException | ParseException e) {
+                // Outdated is still better than nothing
+                Log.i("DownloadUtils", "Failed to revalidate "+cacheDestination.getName()+", using the cached file", e);
+                return cachedResult;
+            }
+        }
+        return revalidateStringCache(url, cacheDestination, null, parseCallback);
+    }
+
+    /**
+     * Revalidate a cached string in the background, unless it is already being revalidated.
+     * Failures are only logged, since the caller has already got the cached string.
+     */
+    private static <T> void revalidateStringCacheAsync(String url, File cacheDestination, ParseCallback<T> parseCallback) {
+        String cachePath = cacheDestination.getAbsolutePath();
+        if(!sRevalidatingCaches.add(cachePath)) return;
+        PojavApplication.sExecutorService.execute(()->{
+            try {
+                // The cached result is only compared against, no need to parse the cache again
+                revalidateStringCache(url, cacheDestination, null, parseCallback, true);
+            }catch (IOException | ParseException e) {
+                Log.i("DownloadUtils", "Failed to revalidate "+cacheDestination.getName(), e);
+            }finally {
+                sRevalidatingCaches.remove(cachePath);
+            }
+        });
+    }
+
+    private static <T> T revalidateStringCache(String url, File cacheDestination, @Nullable T cachedResult,
+                                               ParseCallback<T> parseCallback) throws IOException, ParseException {
+        return revalidateStringCache(url, cacheDestination, cachedResult, parseCallback, cachedResult != null);
+    }
+
+    /**
+     * Download a string if it changed since it was cached, and update the cache.
+     * @param cachedResult the result of parsing the cached string
+     * @param useValidators whether the cached string is valid, and its validators can be sent
+     * @return the cached result if the string did not change, the result of parsing the new string otherwise
+     */
+    private static <T> T revalidateStringCache(String url, File cacheDestination, @Nullable T cachedResult,
+                                               ParseCallback<T> parseCallback, boolean useValidators) throws IOException, ParseException {
+        File validatorsFile = new File(cacheDestination.getAbsolutePath() + ".validators");
+        CacheValidators validators = useValidators ? readCacheValidators(validatorsFile) : null;
+        File tempFile = new File(cacheDestination.getAbsolutePath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            CacheValidators newValidators = downloadFileIfModified(url, tempFile, validators);
+            if(newValidators == null) {
+                Log.i("DownloadUtils", cacheDestination.getName() + " did not change");
+                //noinspection ResultOfMethodCallIgnored
+                cacheDestination.setLastModified(System.currentTimeMillis());
+                return cachedResult;
+            }
+            // if we download the file and fail parsing it, we will yeet outta there
+            // and not cache the unparseable sting
+            T parseResult = parseCallback.process(Tools.read(tempFile));
+            // The old validators must not end up describing the new string
+            if(validatorsFile.exists() && !validatorsFile.delete()) return parseResult;
+            if(!tempFile.renameTo(cacheDestination)) {
+                Log.i("DownloadUtils", "Failed to cache the string");
+                return parseResult;
+            }
+            writeCacheValidators(validatorsFile, newValidators);
+            return parseResult;
+        }finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
 
-        boolean tryWriteCache;
-        if(cacheDestination.exists()) {
-            tryWriteCache = cacheDestination.canWrite();
-        } else {
-            tryWriteCache = FileUtils.ensureParentDirectorySilently(cacheDestination);
+    private static @Nullable CacheValidators readCacheValidators(File validatorsFile) {
+        if(!validatorsFile.isFile()) return null;
+        try {
+            return Tools.readJson(validatorsFile, CacheValidators.class);
+        }catch (IOException | RuntimeException e) {
+            Log.i("DownloadUtils", "Failed to read the cache validators", e);
+            return null;
         }
+    }
 
-        if(tryWriteCache) try {
-            Tools.write(cacheDestination.getAbsolutePath(), urlContent);
-        }catch(IOException e) {
-            Log.i("DownloadUtils", "Failed to cache the string", e);
+    private static void writeCacheValidators(File validatorsFile, CacheValidators validators) {
+        if(validators.eTag == null && validators.lastModified == null) return;
+        try {
+            Tools.write(validatorsFile.getAbsolutePath(), Tools.GLOBAL_GSON.toJson(validators));
+        }catch (IOException e) {
+            Log.i("DownloadUtils", "Failed to write the cache validators", e);
+            //noinspection ResultOfMethodCallIgnored
+            validatorsFile.delete();
         }
-        return parseResult;
     }
 
     private static <T> T downloadFile(Callable<T> downloadFunction) throws IOException{
@@ -148,13 +410,54 @@ public class DownloadUtils {
         T result = null;
         while (attempts < 5 && !fileOkay){
             attempts++;
-            downloadFile(downloadFunction);
+            try {
+                downloadFile(downloadFunction);
+            }catch (FileNotFoundException | InterruptedIOException e) {
+                throw e;
+            }catch (IOException e) {
+                // The download got cancelled, don't reconnect
+                if(Thread.currentThread().isInterrupted()) throw e;
+                if(attempts >= 5) {
+                    discardPartialDownload(outputFile);
+                    throw e;
+                }
+                // Connection failures are retried, and downloadFileMonitored will resume from
+                // where the failed attempt stopped.
+                Log.w("DownloadUtils", "Download attempt "+attempts+" failed, retrying", e);
+                waitBeforeRetry(attempts);
+                continue;
+            }
             fileOkay = verifyFile(outputFile, sha1);
         }
         if(!fileOkay) throw new SHA1VerificationException("SHA1 verifcation failed after 5 download attempts");
         return result;
     }
 
+    /**
+     * Wait before retrying a failed download, a bit longer after each failure
+     * @param attempts the number of failed attempts so far
+     * @throws InterruptedIOException if the thread got interrupted while waiting
+     */
+    private static void waitBeforeRetry(int attempts) throws InterruptedIOException {
+        try {
+            Thread.sleep(RETRY_BASE_DELAY_MS << (attempts - 1));
+        }catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the download");
+        }
+    }
+
+    /**
+     * Delete the ".part" file left behind by failed attempts to download a file
+     * @param outputFile the file that was being downloaded
+     */
+    private static void discardPartialDownload(File outputFile) {
+        File partFile = new File(outputFile.getAbsolutePath() + ".part");
+        sPartialDownloads.remove(partFile.getAbsolutePath());
+        //noinspection ResultOfMethodCallIgnored
+        partFile.delete();
+    }
+
     /**
      * Get the content length for a given URL.
      * @param url the URL to get the length for
@@ -181,6 +484,38 @@ public class DownloadUtils {
         }
     }
 
+    /** The validators of a downloaded file, used to ask the server whether it changed since */
+    @Keep
+    public static class CacheValidators {
+        public final @Nullable String eTag;
+        public final @Nullable String lastModified;
+
+        public CacheValidators(@Nullable String eTag, @Nullable String lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static class PartialDownload {
+        final String url;
+        final String validator;
+
+        PartialDownload(String url, String validator) {
+            this.url = url;
+            this.validator = validator;
+        }
+    }
+
+    /** Thrown when the server answers a download with an unexpected HTTP status */
+    public static class HttpStatusException extends IOException {
+        public final int responseCode;
+
+        public HttpStatusException(int responseCode, String message) {
+            super(message);
+            this.responseCode = responseCode;
+        }
+    }
+
     public static class SHA1VerificationException extends IOException {
         public SHA1VerificationException(String message) {
             super(message);
@@ -26,6 +26,19 @@ public class FilteredSubList<E> extends AbstractList<E> implements List<E> {
         refresh(motherList, filter);
     }
 
+    /**
+     * Create a sub list from the elements at known positions of the mother list, without
+     * going through the whole list again.
+     * @param motherList the mother list
+     * @param indices the positions of the elements to keep, in order
+     */
+    public FilteredSubList(E[] motherList, int[] indices){
+        mArrayList = new ArrayList<>(indices.length);
+        for(int index : indices){
+            mArrayList.add(motherList[index]);
+        }
+    }
+
     public void refresh(E[] motherArray, BasicPredicate<E> filter){
         if(!mArrayList.isEmpty()) mArrayList.clear();
 
@@ -21,6 +21,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.oracle.dalvik.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import net.kdt.pojavlaunch.*;
 import net.kdt.pojavlaunch.extra.ExtraConstants;
@@ -94,6 +95,8 @@ public class JREUtils {
         dlopen(NATIVE_LIB_DIR + "/libopenal.so");
     }
 
+    private static final int LOGCAT_BATCH_SIZE = 8192;
+
     public static void redirectAndPrintJRELog() {
 
         Log.v("jrelog","Log starts here");
@@ -113,12 +116,21 @@ public class JREUtils {
                     Log.i("jrelog-logcat","Starting logcat");
                     java.lang.Process p = logcatPb.start();
 
-                    byte[] buf = new byte[1024];
-                    int len;
-                    while ((len = p.getInputStream().read(buf)) != -1) {
-                        String currStr = new String(buf, 0, len);
-                        Logger.appendToLog(currStr);
+                    // Batch the lines that are already available, so chatty logs don't cost
+                    // one log file write and one listener call per line
+                    BufferedReader logcatReader = new BufferedReader(new InputStreamReader(p.getInputStream()), LOGCAT_BATCH_SIZE);
+                    StringBuilder logBatch = new StringBuilder(LOGCAT_BATCH_SIZE);
+                    String line;
+                    while ((line = logcatReader.readLine()) != null) {
+                        logBatch.append(line);
+                        if (logcatReader.ready() && logBatch.length() < LOGCAT_BATCH_SIZE) {
+                            logBatch.append('\n');
+                            continue;
+                        }
+                        Logger.appendToLog(logBatch.toString());
+                        logBatch.setLength(0);
                     }
+                    if (logBatch.length() > 0) Logger.appendToLog(logBatch.toString());
 
                     if (p.waitFor() != 0) {
                         Log.e("jrelog-logcat", "Logcat exited with code " + p.exitValue());
@@ -285,19 +297,14 @@ public class JREUtils {
         List<String> userArgs = getJavaArgs(activity, runtimeHome, userArgsString);
 
         //Remove arguments that can interfere with the good working of the launcher
-        purgeArg(userArgs,"-Xms");
-        purgeArg(userArgs,"-Xmx");
-        purgeArg(userArgs,"-d32");
-        purgeArg(userArgs,"-d64");
-        purgeArg(userArgs, "-Xint");
-        purgeArg(userArgs, "-XX:+UseTransparentHugePages");
-        purgeArg(userArgs, "-XX:+UseLargePagesInMetaspace");
-        purgeArg(userArgs, "-XX:+UseLargePages");
-        purgeArg(userArgs, "-Dorg.lwjgl.opengl.libname");
-        // Don't let the user specify a custom Freetype library (as the user is unlikely to specify a version compiled for Android)
-        purgeArg(userArgs, "-Dorg.lwjgl.freetype.libname");
-        // Overridden by us to specify the exact number of cores that the android system has
-        purgeArg(userArgs, "-XX:ActiveProcessorCount");
+        purgeArgs(userArgs,
+                "-Xms", "-Xmx", "-d32", "-d64", "-Xint",
+                "-XX:+UseTransparentHugePages", "-XX:+UseLargePagesInMetaspace", "-XX:+UseLargePages",
+                "-Dorg.lwjgl.opengl.libname",
+                // Don't let the user specify a custom Freetype library (as the user is unlikely to specify a version compiled for Android)
+                "-Dorg.lwjgl.freetype.libname",
+                // Overridden by us to specify the exact number of cores that the android system has
+                "-XX:ActiveProcessorCount");
 
         //Add automatically generated args
         userArgs.add("-Xms" + LauncherPreferences.PREF_RAM_ALLOCATION + "M");
@@ -486,13 +493,17 @@ public class JREUtils {
      * Remove the argument from the list, if it exists
      * If the argument exists multiple times, they will all be removed.
      * @param argList The argument list to purge
-     * @param argStart The argument to purge from the list.
+     * @param argStarts The arguments to purge from the list.
      */
-    private static void purgeArg(List<String> argList, String argStart) {
+    private static void purgeArgs(List<String> argList, String... argStarts) {
         Iterator<String> args = argList.iterator();
         while(args.hasNext()) {
             String arg = args.next();
-            if(arg.startsWith(argStart)) args.remove();
+            for(String argStart : argStarts) {
+                if(!arg.startsWith(argStart)) continue;
+                args.remove();
+                break;
+            }
         }
     }
     private static final int EGL_OPENGL_ES_BIT = 0x0001;
@@ -522,8 +533,18 @@ public class JREUtils {
     public static native void releaseBridgeWindow();
     public static native void initializeHooks();
     public static native void setupExitMethod(Context context);
-    // Obtain AWT screen pixels to render on Android SurfaceView
-    public static native int[] renderAWTScreenFrame(/* Object canvas, int width, int height */);
+    public static final int AWT_FRAME_NONE = 0;
+    public static final int AWT_FRAME_UNCHANGED = 1;
+    public static final int AWT_FRAME_UPDATED = 2;
+    /**
+     * Obtain AWT screen pixels to render on Android SurfaceView
+     * @param frameBuffer direct buffer receiving the pixels, in the format of an ARGB_8888 Bitmap.
+     *                    Only written to when the frame is updated.
+     * @param forceUpdate whether to copy the frame even if it didn't change since the last call
+     * @return AWT_FRAME_NONE if no frame is available, AWT_FRAME_UNCHANGED if the frame is the same
+     * as the last one, AWT_FRAME_UPDATED if the new frame was copied into the buffer
+     */
+    public static native int renderAWTScreenFrame(ByteBuffer frameBuffer, boolean forceUpdate);
     static {
         System.loadLibrary("exithook");
         System.loadLibrary("pojavexec");
@@ -0,0 +1,114 @@
+package net.kdt.pojavlaunch.utils;
+
+import android.util.Log;
+
+import androidx.annotation.Keep;
+import androidx.annotation.Nullable;
+
+import net.kdt.pojavlaunch.Tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache for the launch classpaths of versions. Building a classpath requires resolving the path
+ * of every library and checking that it exists, which adds up for versions with hundreds of libraries.
+ * Each classpath is stored along with a fingerprint of the state it was built from, and is only
+ * reused while the fingerprint matches. The classpath only depends on which libraries exist,
+ * so the fingerprint covers the directories of the libraries instead of the library files themselves.
+ */
+public class LaunchClasspathCache {
+    private static final ConcurrentHashMap<String, CachedClasspath> sMemoryCache = new ConcurrentHashMap<>();
+
+    /**
+     * Get a cached classpath.
+     * @param versionName the name of the version
+     * @param fingerprint the fingerprint of the current state of the version
+     * @return the classpath, or null if it was not cached or was built for another fingerprint
+     */
+    public static @Nullable String get(String versionName, String fingerprint) {
+        CachedClasspath cachedClasspath = sMemoryCache.get(versionName);
+        if(cachedClasspath == null) {
+            cachedClasspath = readFromDisk(versionName);
+            if(cachedClasspath == null) return null;
+            sMemoryCache.put(versionName, cachedClasspath);
+        }
+        if(!fingerprint.equals(cachedClasspath.fingerprint)) return null;
+        return cachedClasspath.classpath;
+    }
+
+    /**
+     * Store a freshly built classpath.
+     * @param versionName the name of the version
+     * @param fingerprint the fingerprint of the state that the classpath was built from
+     * @param classpath the classpath
+     */
+    public static void put(String versionName, String fingerprint, String classpath) {
+        CachedClasspath cachedClasspath = new CachedClasspath(fingerprint, classpath);
+        sMemoryCache.put(versionName, cachedClasspath);
+        writeToDisk(versionName, cachedClasspath);
+    }
+
+    /**
+     * Drop all cached classpaths. Called after the launcher changed libraries, in case the change
+     * happened too quickly to be seen in the modification times of their directories.
+     */
+    public static void invalidate() {
+        sMemoryCache.clear();
+        File[] cacheFiles = getCacheDirectory().listFiles();
+        if(cacheFiles == null) return;
+        for(File cacheFile : cacheFiles) {
+            //noinspection ResultOfMethodCallIgnored
+            cacheFile.delete();
+        }
+    }
+
+    private static File getCacheDirectory() {
+        return new File(Tools.DIR_CACHE, "launch_classpaths");
+    }
+
+    private static @Nullable CachedClasspath readFromDisk(String versionName) {
+        File cacheFile = new File(getCacheDirectory(), versionName + ".json");
+        if(!cacheFile.isFile()) return null;
+        try {
+            CachedClasspath cachedClasspath = Tools.readJson(cacheFile, CachedClasspath.class);
+            if(cachedClasspath == null || cachedClasspath.classpath == null) return null;
+            return cachedClasspath;
+        }catch (Exception e) {
+            Log.w("LaunchClasspathCache", "Failed to read cached classpath of "+versionName, e);
+            return null;
+        }
+    }
+
+    private static void writeToDisk(String versionName, CachedClasspath cachedClasspath) {
+        File cacheFile = new File(getCacheDirectory(), versionName + ".json");
+        File tempFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        try {
+            FileUtils.ensureParentDirectory(tempFile);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                Tools.GLOBAL_GSON.toJson(cachedClasspath, writer);
+            }
+            if(!tempFile.renameTo(cacheFile)) throw new IOException("Failed to move the cached classpath into place");
+        }catch (IOException e) {
+            Log.w("LaunchClasspathCache", "Failed to write cached classpath of "+versionName, e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    @Keep
+    private static class CachedClasspath {
+        String fingerprint;
+        String classpath;
+
+        CachedClasspath(String fingerprint, String classpath) {
+            this.fingerprint = fingerprint;
+            this.classpath = classpath;
+        }
+    }
+}
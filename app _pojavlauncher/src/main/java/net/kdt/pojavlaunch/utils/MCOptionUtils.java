@@ -13,23 +13,48 @@ import net.kdt.pojavlaunch.Tools;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Reads and writes the options.txt file of Minecraft.
+ * The file is kept as a list of lines, so that saving it keeps the order of the options and
+ * any line that isn't an option. Readers get an immutable snapshot of the options, so they
+ * don't need to synchronize with the file observer or with the writers.
+ */
 public class MCOptionUtils {
-    private static final HashMap<String,String> sParameterMap = new HashMap<>();
-    private static final ArrayList<WeakReference<MCOptionListener>> sOptionListeners = new ArrayList<>();
+    private static final String OPTIONS_FILE_NAME = "options.txt";
+    private static final Object sLock = new Object();
+    /* The lines of the file, in order. Guarded by sLock */
+    private static final ArrayList<String> sLines = new ArrayList<>();
+    /* The index of the line of each option. Guarded by sLock */
+    private static final HashMap<String, Integer> sKeyLines = new HashMap<>();
+    private static volatile Map<String, String> sParameterSnapshot = Collections.emptyMap();
+    private static boolean sHasUnsavedChanges = false;
+    private static final List<WeakReference<MCOptionListener>> sOptionListeners = new CopyOnWriteArrayList<>();
     private static FileObserver sFileObserver;
     private static String sOptionFolderPath = null;
     public interface MCOptionListener {
-        /** Called when an option is changed. Don't know which one though */
-        void onOptionChanged();
+        /**
+         * Called when options were changed by an external writer
+         * @param changedKeys the keys of the options that were added, changed or removed
+         */
+        void onOptionChanged(Set<String> changedKeys);
     }
 
 
@@ -40,49 +65,92 @@ public class MCOptionUtils {
     }
 
     public static void load(@NonNull String folderPath) {
-        File optionFile = new File(folderPath + "/options.txt");
+        File optionFile = new File(folderPath, OPTIONS_FILE_NAME);
         if(!optionFile.exists()) {
             try { // Needed for new instances I guess  :think:
                 optionFile.createNewFile();
             } catch (IOException e) { e.printStackTrace(); }
         }
 
-        if(sFileObserver == null || !Objects.equals(sOptionFolderPath, folderPath)){
-            sOptionFolderPath = folderPath;
-            setupFileObserver();
+        synchronized (sLock) {
+            if(sFileObserver == null || !Objects.equals(sOptionFolderPath, folderPath)){
+                if(sFileObserver != null) sFileObserver.stopWatching();
+                sOptionFolderPath = folderPath;
+                setupFileObserver();
+            }
+            reload();
         }
-        sOptionFolderPath = folderPath; // Yeah I know, it may be redundant
-
-        sParameterMap.clear();
+    }
 
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(optionFile));
+    /**
+     * Read the file again, replacing the options in memory.
+     * @return the keys of the options that were added, changed or removed
+     */
+    private static Set<String> reload() {
+        ArrayList<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(sOptionFolderPath, OPTIONS_FILE_NAME)))) {
             String line;
-            while ((line = reader.readLine()) != null) {
+            while ((line = reader.readLine()) != null) lines.add(line);
+        } catch (IOException e) {
+            Log.w(Tools.APP_NAME, "Could not load options.txt", e);
+            return Collections.emptySet();
+        }
+
+        synchronized (sLock) {
+            Map<String, String> oldParameters = sParameterSnapshot;
+            sLines.clear();
+            sKeyLines.clear();
+            HashMap<String, String> parameters = new HashMap<>();
+            for(String line : lines) {
                 int firstColonIndex = line.indexOf(':');
                 if(firstColonIndex < 0) {
                     Log.w(Tools.APP_NAME, "No colon on line \""+line+"\", skipping");
-                    continue;
+                }else{
+                    String key = line.substring(0, firstColonIndex);
+                    parameters.put(key, line.substring(firstColonIndex + 1));
+                    sKeyLines.put(key, sLines.size());
                 }
-                sParameterMap.put(line.substring(0,firstColonIndex), line.substring(firstColonIndex+1));
+                sLines.add(line);
             }
-            reader.close();
-        } catch (IOException e) {
-            Log.w(Tools.APP_NAME, "Could not load options.txt", e);
+            sParameterSnapshot = Collections.unmodifiableMap(parameters);
+            sHasUnsavedChanges = false;
+
+            Set<String> changedKeys = new HashSet<>();
+            for(Map.Entry<String, String> entry : parameters.entrySet()) {
+                if(!entry.getValue().equals(oldParameters.get(entry.getKey()))) changedKeys.add(entry.getKey());
+            }
+            for(String key : oldParameters.keySet()) {
+                if(!parameters.containsKey(key)) changedKeys.add(key);
+            }
+            return Collections.unmodifiableSet(changedKeys);
         }
     }
 
     public static void set(String key, String value) {
-        sParameterMap.put(key,value);
+        synchronized (sLock) {
+            if(value.equals(sParameterSnapshot.get(key))) return;
+            String line = key + ':' + value;
+            Integer lineIndex = sKeyLines.get(key);
+            if(lineIndex != null) {
+                sLines.set(lineIndex, line);
+            }else{
+                sKeyLines.put(key, sLines.size());
+                sLines.add(line);
+            }
+            HashMap<String, String> parameters = new HashMap<>(sParameterSnapshot);
+            parameters.put(key, value);
+            sParameterSnapshot = Collections.unmodifiableMap(parameters);
+            sHasUnsavedChanges = true;
+        }
     }
 
     /** Set an array of String, instead of a simple value. Not supported on all options */
     public static void set(String key, List<String> values){
-        sParameterMap.put(key, values.toString());
+        set(key, values.toString());
     }
 
     public static String get(String key){
-        return sParameterMap.get(key);
+        return sParameterSnapshot.get(key);
     }
 
     /** @return A list of values from an array stored as a string */
@@ -99,20 +167,25 @@ public class MCOptionUtils {
         return Arrays.asList(value.split(","));
     }
 
+    /** Write the options back to the file, if any of them were changed */
     public static void save() {
-        StringBuilder result = new StringBuilder();
-        for(String key : sParameterMap.keySet())
-            result.append(key)
-                    .append(':')
-                    .append(sParameterMap.get(key))
-                    .append('\n');
-
-        try {
+        synchronized (sLock) {
+            if(!sHasUnsavedChanges) return;
+            File optionFile = new File(sOptionFolderPath, OPTIONS_FILE_NAME);
+            File tempFile = new File(sOptionFolderPath, OPTIONS_FILE_NAME + ".tmp");
             sFileObserver.stopWatching();
-            Tools.write(sOptionFolderPath + "/options.txt", result.toString());
+            try {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                    for(String line : sLines) writer.append(line).append('\n');
+                }
+                if(!tempFile.renameTo(optionFile)) throw new IOException("Failed to move options.txt into place");
+                sHasUnsavedChanges = false;
+            } catch (IOException e) {
+                Log.w(Tools.APP_NAME, "Could not save options.txt", e);
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
             sFileObserver.startWatching();
-        } catch (IOException e) {
-            Log.w(Tools.APP_NAME, "Could not save options.txt", e);
         }
     }
 
@@ -129,23 +202,23 @@ public class MCOptionUtils {
         return guiScale;
     }
 
-    /** Add a file observer to reload options on file change
-     * Listeners get notified of the change */
+    /** Add a file observer to reload options when the file is done being written
+     * Listeners get notified of the changed options. The folder is watched, since saving
+     * replaces the file */
     private static void setupFileObserver(){
+        int eventMask = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO;
         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q){
-            sFileObserver = new FileObserver(new File(sOptionFolderPath + "/options.txt"), FileObserver.MODIFY) {
+            sFileObserver = new FileObserver(new File(sOptionFolderPath), eventMask) {
                 @Override
                 public void onEvent(int i, @Nullable String s) {
-                    MCOptionUtils.load();
-                    notifyListeners();
+                    onOptionFileEvent(s);
                 }
             };
         }else{
-            sFileObserver = new FileObserver(sOptionFolderPath + "/options.txt", FileObserver.MODIFY) {
+            sFileObserver = new FileObserver(sOptionFolderPath, eventMask) {
                 @Override
                 public void onEvent(int i, @Nullable String s) {
-                    MCOptionUtils.load();
-                    notifyListeners();
+                    onOptionFileEvent(s);
                 }
             };
         }
@@ -153,13 +226,19 @@ public class MCOptionUtils {
         sFileObserver.startWatching();
     }
 
+    private static void onOptionFileEvent(@Nullable String fileName) {
+        if(!OPTIONS_FILE_NAME.equals(fileName)) return;
+        Set<String> changedKeys = reload();
+        if(!changedKeys.isEmpty()) notifyListeners(changedKeys);
+    }
+
     /** Notify the option listeners */
-    public static void notifyListeners(){
+    public static void notifyListeners(Set<String> changedKeys){
         for(WeakReference<MCOptionListener> weakReference : sOptionListeners){
             MCOptionListener optionListener = weakReference.get();
             if(optionListener == null) continue;
 
-            optionListener.onOptionChanged();
+            optionListener.onOptionChanged(changedKeys);
         }
     }
 
@@ -0,0 +1,162 @@
+package net.kdt.pojavlaunch.utils;
+
+import android.util.Log;
+
+import androidx.annotation.Keep;
+import androidx.annotation.Nullable;
+
+import net.kdt.pojavlaunch.BuildConfig;
+import net.kdt.pojavlaunch.JMinecraftVersionList;
+import net.kdt.pojavlaunch.Tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache for versions with their inheritance already resolved. Each resolved version remembers
+ * the JSON files it was built from, along with their sizes and modification times, and is only
+ * reused while none of those files have changed, and while the launcher is the same build that
+ * resolved it, since the resolution rules and library replacements change between builds.
+ * Resolved versions are kept in memory and persisted into the cache directory, so that they
+ * survive process restarts.
+ * Returned versions are shared between callers and must not be modified.
+ */
+public class ResolvedVersionCache {
+    private static final ConcurrentHashMap<String, CachedVersion> sMemoryCache = new ConcurrentHashMap<>();
+
+    /**
+     * Get a resolved version from the cache.
+     * @param versionName the name of the version
+     * @param skipInheriting whether the version was resolved without inheriting
+     * @return the resolved version, or null if it's not cached or if its files changed since
+     */
+    public static @Nullable JMinecraftVersionList.Version get(String versionName, boolean skipInheriting) {
+        String cacheKey = getCacheKey(versionName, skipInheriting);
+        CachedVersion cachedVersion = sMemoryCache.get(cacheKey);
+        if(cachedVersion == null) {
+            cachedVersion = readFromDisk(cacheKey);
+            if(cachedVersion == null) return null;
+        }
+        if(!cachedVersion.isUpToDate()) {
+            sMemoryCache.remove(cacheKey);
+            return null;
+        }
+        sMemoryCache.put(cacheKey, cachedVersion);
+        return cachedVersion.version;
+    }
+
+    /**
+     * Get the fingerprint of the files that a cached version was resolved from.
+     * @param versionName the name of the version
+     * @param skipInheriting whether the version was resolved without inheriting
+     * @return the fingerprint, or null if the version is not cached or if its files changed since
+     */
+    public static @Nullable String getCachedFingerprint(String versionName, boolean skipInheriting) {
+        if(get(versionName, skipInheriting) == null) return null;
+        CachedVersion cachedVersion = sMemoryCache.get(getCacheKey(versionName, skipInheriting));
+        return cachedVersion != null ? cachedVersion.fingerprint : null;
+    }
+
+    /**
+     * Put a freshly resolved version into the cache.
+     * @param versionName the name of the version
+     * @param skipInheriting whether the version was resolved without inheriting
+     * @param chainFiles the JSON files the version was resolved from
+     * @param fingerprint the fingerprint of the chain files, taken before they were read. See {@link #getFingerprint(List)}
+     * @param version the resolved version
+     */
+    public static void put(String versionName, boolean skipInheriting, List<File> chainFiles,
+                           String fingerprint, JMinecraftVersionList.Version version) {
+        String cacheKey = getCacheKey(versionName, skipInheriting);
+        String[] chainPaths = new String[chainFiles.size()];
+        for(int i = 0; i < chainPaths.length; i++) chainPaths[i] = chainFiles.get(i).getAbsolutePath();
+        CachedVersion cachedVersion = new CachedVersion(chainPaths, fingerprint, version);
+        sMemoryCache.put(cacheKey, cachedVersion);
+        writeToDisk(cacheKey, cachedVersion);
+    }
+
+    /**
+     * Compute the fingerprint of the files of an inheritance chain.
+     * @param chainFiles the files to compute the fingerprint of
+     * @return the fingerprint, which changes whenever any of the files change
+     */
+    public static String getFingerprint(List<File> chainFiles) {
+        StringBuilder fingerprint = new StringBuilder();
+        for(File file : chainFiles) {
+            fingerprint.append(file.getAbsolutePath()).append('|')
+                    .append(file.length()).append('|')
+                    .append(file.lastModified()).append('\n');
+        }
+        return fingerprint.toString();
+    }
+
+    private static String getCacheKey(String versionName, boolean skipInheriting) {
+        return skipInheriting ? versionName + ".noinherit" : versionName;
+    }
+
+    private static File getCacheFile(String cacheKey) {
+        return new File(Tools.DIR_CACHE, "resolved_versions/" + cacheKey + ".json");
+    }
+
+    private static @Nullable CachedVersion readFromDisk(String cacheKey) {
+        File cacheFile = getCacheFile(cacheKey);
+        if(!cacheFile.isFile()) return null;
+        try {
+            CachedVersion cachedVersion = Tools.readJson(cacheFile, CachedVersion.class);
+            if(cachedVersion == null || cachedVersion.chainPaths == null || cachedVersion.version == null) return null;
+            return cachedVersion;
+        }catch (Exception e) {
+            Log.w("ResolvedVersionCache", "Failed to read cached version "+cacheKey, e);
+            return null;
+        }
+    }
+
+    private static void writeToDisk(String cacheKey, CachedVersion cachedVersion) {
+        File cacheFile = getCacheFile(cacheKey);
+        File tempFile = new File(cacheFile.getAbsolutePath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            FileUtils.ensureParentDirectory(tempFile);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                Tools.GLOBAL_GSON.toJson(cachedVersion, writer);
+            }
+            if(!tempFile.renameTo(cacheFile)) throw new IOException("Failed to move the cached version into place");
+        }catch (IOException e) {
+            Log.w("ResolvedVersionCache", "Failed to write cached version "+cacheKey, e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    @Keep
+    private static class CachedVersion {
+        String[] chainPaths;
+        String fingerprint;
+        int launcherVersion;
+        JMinecraftVersionList.Version version;
+
+        CachedVersion(String[] chainPaths, String fingerprint, JMinecraftVersionList.Version version) {
+            this.launcherVersion = BuildConfig.VERSION_CODE;
+            this.chainPaths = chainPaths;
+            this.fingerprint = fingerprint;
+            this.version = version;
+        }
+
+        boolean isUpToDate() {
+            if(launcherVersion != BuildConfig.VERSION_CODE) return false;
+            List<File> chainFiles = new ArrayList<>(chainPaths.length);
+            for(String chainPath : chainPaths) {
+                File file = new File(chainPath);
+                if(!file.isFile()) return false;
+                chainFiles.add(file);
+            }
+            return getFingerprint(chainFiles).equals(fingerprint);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package net.kdt.pojavlaunch.utils;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import net.kdt.pojavlaunch.JMinecraftVersionList;
+import net.kdt.pojavlaunch.JMinecraftVersionList.VersionType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the version manifest in a compact binary form, so that it can be loaded without
+ * parsing the whole JSON manifest again. Only the fields of the manifest entries are kept.
+ * Every distinct string is stored once in a string table and shared by all the entries that use it,
+ * and known version types are stored as their ordinal.
+ * The validators of the downloaded manifest are stored along with it, to refresh it conditionally.
+ */
+public class VersionListCache {
+    private static final int MAGIC = 0x504A564C; // "PJVL"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Read a cached version list.
+     * @param cacheFile the cache file
+     * @return the cached version list, or null if there is no usable cache
+     */
+    public static @Nullable CachedVersionList read(File cacheFile) {
+        if(!cacheFile.isFile()) return null;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if(inputStream.readInt() != MAGIC || inputStream.readInt() != FORMAT_VERSION) {
+                Log.i("VersionListCache", "Ignoring cached version list with an unknown format");
+                return null;
+            }
+            DownloadUtils.CacheValidators validators = new DownloadUtils.CacheValidators(
+                    readNullableString(inputStream), readNullableString(inputStream));
+
+            String[] stringTable = new String[inputStream.readInt()];
+            for(int i = 0; i < stringTable.length; i++) stringTable[i] = inputStream.readUTF();
+
+            JMinecraftVersionList versionList = new JMinecraftVersionList();
+            int latestCount = inputStream.readInt();
+            versionList.latest = new HashMap<>(latestCount * 2);
+            for(int i = 0; i < latestCount; i++) {
+                versionList.latest.put(stringTable[inputStream.readInt()], getString(stringTable, inputStream.readInt()));
+            }
+
+            VersionType[] versionTypes = VersionType.values();
+            String[] typeNames = getTypeNames();
+            versionList.versions = new JMinecraftVersionList.Version[inputStream.readInt()];
+            for(int i = 0; i < versionList.versions.length; i++) {
+                JMinecraftVersionList.Version version = new JMinecraftVersionList.Version();
+                int typeOrdinal = inputStream.readUnsignedByte();
+                if(typeOrdinal >= versionTypes.length) throw new IOException("Unknown version type "+typeOrdinal);
+                version.type = versionTypes[typeOrdinal] == VersionType.OTHER
+                        ? getString(stringTable, inputStream.readInt())
+                        : typeNames[typeOrdinal];
+                version.id = getString(stringTable, inputStream.readInt());
+                version.url = getString(stringTable, inputStream.readInt());
+                version.sha1 = getString(stringTable, inputStream.readInt());
+                version.time = getString(stringTable, inputStream.readInt());
+                version.releaseTime = getString(stringTable, inputStream.readInt());
+                versionList.versions[i] = version;
+            }
+            return new CachedVersionList(versionList, validators);
+        }catch (IOException | IndexOutOfBoundsException e) {
+            Log.w("VersionListCache", "Failed to read the cached version list", e);
+            return null;
+        }
+    }
+
+    /**
+     * Write a version list into the cache. The cache file is replaced atomically.
+     * @param cacheFile the cache file
+     * @param versionList the version list
+     * @param validators the validators of the manifest the version list was parsed from, or null if unknown
+     * @throws IOException if the cache could not be written
+     */
+    public static void write(File cacheFile, JMinecraftVersionList versionList,
+                             @Nullable DownloadUtils.CacheValidators validators) throws IOException {
+        Map<String, Integer> stringIndices = new HashMap<>();
+        List<String> stringTable = new ArrayList<>();
+        Map<String, String> latest = versionList.latest != null ? versionList.latest : new HashMap<>();
+        for(Map.Entry<String, String> entry : latest.entrySet()) {
+            internString(stringIndices, stringTable, entry.getKey());
+            internString(stringIndices, stringTable, entry.getValue());
+        }
+        for(JMinecraftVersionList.Version version : versionList.versions) {
+            if(VersionType.fromString(version.type) == VersionType.OTHER) internString(stringIndices, stringTable, version.type);
+            internString(stringIndices, stringTable, version.id);
+            internString(stringIndices, stringTable, version.url);
+            internString(stringIndices, stringTable, version.sha1);
+            internString(stringIndices, stringTable, version.time);
+            internString(stringIndices, stringTable, version.releaseTime);
+        }
+
+        File tempFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        FileUtils.ensureParentDirectory(tempFile);
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(FORMAT_VERSION);
+                writeNullableString(outputStream, validators != null ? validators.eTag : null);
+                writeNullableString(outputStream, validators != null ? validators.lastModified : null);
+
+                outputStream.writeInt(stringTable.size());
+                for(String string : stringTable) outputStream.writeUTF(string);
+
+                outputStream.writeInt(latest.size());
+                for(Map.Entry<String, String> entry : latest.entrySet()) {
+                    outputStream.writeInt(getIndex(stringIndices, entry.getKey()));
+                    outputStream.writeInt(getIndex(stringIndices, entry.getValue()));
+                }
+
+                outputStream.writeInt(versionList.versions.length);
+                for(JMinecraftVersionList.Version version : versionList.versions) {
+                    VersionType versionType = VersionType.fromString(version.type);
+                    outputStream.writeByte(versionType.ordinal());
+                    if(versionType == VersionType.OTHER) outputStream.writeInt(getIndex(stringIndices, version.type));
+                    outputStream.writeInt(getIndex(stringIndices, version.id));
+                    outputStream.writeInt(getIndex(stringIndices, version.url));
+                    outputStream.writeInt(getIndex(stringIndices, version.sha1));
+                    outputStream.writeInt(getIndex(stringIndices, version.time));
+                    outputStream.writeInt(getIndex(stringIndices, version.releaseTime));
+                }
+            }
+            if(!tempFile.renameTo(cacheFile)) throw new IOException("Failed to move the cached version list into place");
+        }finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    private static String[] getTypeNames() {
+        String[] typeNames = new String[VersionType.values().length];
+        typeNames[VersionType.RELEASE.ordinal()] = "release";
+        typeNames[VersionType.SNAPSHOT.ordinal()] = "snapshot";
+        typeNames[VersionType.OLD_BETA.ordinal()] = "old_beta";
+        typeNames[VersionType.OLD_ALPHA.ordinal()] = "old_alpha";
+        return typeNames;
+    }
+
+    private static void internString(Map<String, Integer> stringIndices, List<String> stringTable, @Nullable String string) {
+        if(string == null || stringIndices.containsKey(string)) return;
+        stringIndices.put(string, stringTable.size());
+        stringTable.add(string);
+    }
+
+    private static int getIndex(Map<String, Integer> stringIndices, @Nullable String string) {
+        if(string == null) return -1;
+        //noinspection ConstantConditions every non-null string was interned beforehand
+        return stringIndices.get(string);
+    }
+
+    private static @Nullable String getString(String[] stringTable, int index) {
+        return index == -1 ? null : stringTable[index];
+    }
+
+    private static void writeNullableString(DataOutputStream outputStream, @Nullable String string) throws IOException {
+        outputStream.writeBoolean(string != null);
+        if(string != null) outputStream.writeUTF(string);
+    }
+
+    private static @Nullable String readNullableString(DataInputStream inputStream) throws IOException {
+        return inputStream.readBoolean() ? inputStream.readUTF() : null;
+    }
+
+    public static class CachedVersionList {
+        public final JMinecraftVersionList versionList;
+        public final @Nullable DownloadUtils.CacheValidators validators;
+
+        public CachedVersionList(JMinecraftVersionList versionList, @Nullable DownloadUtils.CacheValidators validators) {
+            this.versionList = versionList;
+            this.validators = validators;
+        }
+    }
+}
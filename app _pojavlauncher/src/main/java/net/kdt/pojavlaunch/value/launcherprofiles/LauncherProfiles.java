@@ -6,23 +6,42 @@ import androidx.annotation.NonNull;
 
 import net.kdt.pojavlaunch.Tools;
 import net.kdt.pojavlaunch.prefs.LauncherPreferences;
+import net.kdt.pojavlaunch.profiles.ProfileIconStore;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class LauncherProfiles {
+    /* Version of the profile file layout written by this launcher. A file at this version has
+     * normalized profile keys and icons moved into the ProfileIconStore */
+    private static final int SCHEMA_VERSION = 1;
+    private static final long WRITE_DELAY_MS = 300;
     public static MinecraftLauncherProfiles mainProfileJson;
     private static final File launcherProfilesFile = new File(Tools.DIR_GAME_NEW, "launcher_profiles.json");
+    private static final AtomicReference<String> sPendingJson = new AtomicReference<>();
+    private static final Object sWriteLock = new Object();
+    /* Held while icons are stored, so that unused icons are never collected at the same time */
+    private static final Object sIconLock = new Object();
+    /* The icons of the profiles as of the last write, guarded by sIconLock */
+    private static List<String> sReferencedIcons = new ArrayList<>();
+    private static final ScheduledExecutorService sWriteExecutor = Executors.newSingleThreadScheduledExecutor();
 
     /** Reload the profile from the file, creating a default one if necessary */
     public static void load(){
+        // A pending write would be lost otherwise
+        flushPendingWrite();
         if (launcherProfilesFile.exists()) {
             try {
-                mainProfileJson = Tools.GLOBAL_GSON.fromJson(Tools.read(launcherProfilesFile.getAbsolutePath()), MinecraftLauncherProfiles.class);
+                mainProfileJson = Tools.readJson(launcherProfilesFile, MinecraftLauncherProfiles.class);
             } catch (IOException e) {
                 Log.e(LauncherProfiles.class.toString(), "Failed to load file: ", e);
                 throw new RuntimeException(e);
@@ -35,20 +54,61 @@ public class LauncherProfiles {
         if (mainProfileJson.profiles.size() == 0)
             mainProfileJson.profiles.put(UUID.randomUUID().toString(), MinecraftProfile.getDefaultProfile());
 
+        // Installers only ever add profiles, so the file is still normalized if nothing was added since the last write
+        if (mainProfileJson.pojavSchemaVersion == SCHEMA_VERSION
+                && mainProfileJson.pojavProfileCount == mainProfileJson.profiles.size()) return;
+
         // Normalize profile names from mod installers
-        if(normalizeProfileIds(mainProfileJson)){
-            write();
-            load();
-        }
+        normalizeProfileIds(mainProfileJson);
+        write();
     }
 
-    /** Apply the current configuration into a file */
+    /**
+     * Apply the current configuration into a file. The profiles are serialized right away,
+     * but the file itself is written in the background, after a short delay
+     * so that consecutive changes only cause one write. Stored icons that are not used anymore
+     * are removed after the file is written.
+     */
     public static void write() {
-        try {
-            Tools.write(launcherProfilesFile.getAbsolutePath(), mainProfileJson.toJson());
-        } catch (IOException e) {
-            Log.e(LauncherProfiles.class.toString(), "Failed to write profile file", e);
-            throw new RuntimeException(e);
+        synchronized (sIconLock) {
+            List<String> referencedIcons = new ArrayList<>();
+            for(MinecraftProfile profile : mainProfileJson.profiles.values()) {
+                profile.icon = ProfileIconStore.storeIcon(profile.icon);
+                if(profile.icon != null) referencedIcons.add(profile.icon);
+            }
+            sReferencedIcons = referencedIcons;
+        }
+        mainProfileJson.pojavSchemaVersion = SCHEMA_VERSION;
+        mainProfileJson.pojavProfileCount = mainProfileJson.profiles.size();
+        if(sPendingJson.getAndSet(mainProfileJson.toJson()) == null) {
+            sWriteExecutor.schedule(LauncherProfiles::flushPendingWrite, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Write the pending configuration to the file right away, if there is one */
+    public static void flushPendingWrite() {
+        synchronized (sWriteLock) {
+            String pendingJson = sPendingJson.getAndSet(null);
+            if(pendingJson == null) return;
+            File tempFile = new File(launcherProfilesFile.getAbsolutePath() + ".tmp");
+            try {
+                Tools.write(tempFile.getAbsolutePath(), pendingJson);
+                if(!tempFile.renameTo(launcherProfilesFile)) throw new IOException("Failed to move the profile file into place");
+                // This might be called from the UI thread, so collect the icons in the background
+                sWriteExecutor.execute(LauncherProfiles::removeUnusedIcons);
+            } catch (IOException e) {
+                Log.e(LauncherProfiles.class.toString(), "Failed to write profile file", e);
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static void removeUnusedIcons() {
+        // The icons may be referenced by a profile file that is not written yet, the next write will collect them
+        if(sPendingJson.get() != null) return;
+        synchronized (sIconLock) {
+            ProfileIconStore.removeUnreferencedIcons(sReferencedIcons);
         }
     }
 
@@ -15,6 +15,9 @@ public class MinecraftLauncherProfiles {
 	// public Map analyticsToken;
 	public int analyticsFailcount;
 	public MinecraftSelectedUser selectedUser;
+	// Written by Pojav, see LauncherProfiles.SCHEMA_VERSION
+	public int pojavSchemaVersion;
+	public int pojavProfileCount;
     
     public String toJson() {
         return Tools.GLOBAL_GSON.toJson(this);
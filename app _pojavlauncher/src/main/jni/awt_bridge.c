@@ -2,6 +2,7 @@
 #include <assert.h>
 #include <string.h>
 #include <stdio.h>
+#include <stdint.h>
 
 static JavaVM* dalvikJavaVMPtr;
 
@@ -77,20 +78,40 @@ JNIEXPORT void JNICALL Java_net_kdt_pojavlaunch_AWTInputBridge_nativeSendData(JN
     );
 }
 
-// TODO: check for memory leaks
-// int printed = 0;
+#define AWT_FRAME_NONE 0
+#define AWT_FRAME_UNCHANGED 1
+#define AWT_FRAME_UPDATED 2
+
+static uint32_t lastFrameHash;
+
+/* Hashes the pixels, FNV-1a over whole pixels */
+static uint32_t hashFrame(const uint32_t* pixels, jsize pixelCount) {
+    uint32_t hash = 2166136261u;
+    for(jsize i = 0; i < pixelCount; i++) {
+        hash = (hash ^ pixels[i]) * 16777619u;
+    }
+    return hash;
+}
+
+/* Converts the pixels from AWT ARGB to the RGBA byte order of Android bitmaps. AWT screens are opaque. */
+static void copyFrame(uint32_t* destination, const uint32_t* pixels, jsize pixelCount) {
+    for(jsize i = 0; i < pixelCount; i++) {
+        uint32_t pixel = pixels[i];
+        destination[i] = 0xFF000000u | (pixel & 0x0000FF00u) | ((pixel >> 16) & 0xFFu) | ((pixel & 0xFFu) << 16);
+    }
+}
+
 int threadAttached = 0;
-JNIEXPORT jintArray JNICALL Java_net_kdt_pojavlaunch_utils_JREUtils_renderAWTScreenFrame(JNIEnv* env, jclass clazz /*, jobject canvas, jint width, jint height */) {
+JNIEXPORT jint JNICALL Java_net_kdt_pojavlaunch_utils_JREUtils_renderAWTScreenFrame(JNIEnv* env, jclass clazz, jobject frameBuffer, jboolean forceUpdate) {
     if (runtimeJNIEnvPtr_GRAPHICS == NULL) {
         if (runtimeJavaVMPtr == NULL) {
-            return NULL;
+            return AWT_FRAME_NONE;
         } else {
             (*runtimeJavaVMPtr)->AttachCurrentThread(runtimeJavaVMPtr, &runtimeJNIEnvPtr_GRAPHICS, NULL);
         }
     }
 
-    int *rgbArray;
-    jintArray jreRgbArray, androidRgbArray;
+    jintArray jreRgbArray;
   
     if (method_GetRGB == NULL) {
         class_CTCScreen = (*runtimeJNIEnvPtr_GRAPHICS)->FindClass(runtimeJNIEnvPtr_GRAPHICS, "net/java/openjdk/cacio/ctc/CTCScreen");
@@ -99,6 +120,7 @@ JNIEXPORT jintArray JNICALL Java_net_kdt_pojavlaunch_utils_JREUtils_renderAWTScr
             class_CTCScreen = (*runtimeJNIEnvPtr_GRAPHICS)->FindClass(runtimeJNIEnvPtr_GRAPHICS, "com/github/caciocavallosilano/cacio/ctc/CTCScreen");
         }
         assert(class_CTCScreen != NULL);
+        class_CTCScreen = (*runtimeJNIEnvPtr_GRAPHICS)->NewGlobalRef(runtimeJNIEnvPtr_GRAPHICS, class_CTCScreen);
         method_GetRGB = (*runtimeJNIEnvPtr_GRAPHICS)->GetStaticMethodID(runtimeJNIEnvPtr_GRAPHICS, class_CTCScreen, "getCurrentScreenRGB", "()[I");
         assert(method_GetRGB != NULL);
     }
@@ -108,20 +130,31 @@ JNIEXPORT jintArray JNICALL Java_net_kdt_pojavlaunch_utils_JREUtils_renderAWTScr
         method_GetRGB
     );
     if (jreRgbArray == NULL) {
-        return NULL;
-    }
-    
-    // Copy JRE RGB array memory to Android.
-    int arrayLength = (*runtimeJNIEnvPtr_GRAPHICS)->GetArrayLength(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray);
-    rgbArray = (*runtimeJNIEnvPtr_GRAPHICS)->GetIntArrayElements(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray, 0);
-    androidRgbArray = (*env)->NewIntArray(env, arrayLength);
-    (*env)->SetIntArrayRegion(env, androidRgbArray, 0, arrayLength, rgbArray);
-
-    (*runtimeJNIEnvPtr_GRAPHICS)->ReleaseIntArrayElements(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray, rgbArray, NULL);
-    // (*env)->DeleteLocalRef(env, androidRgbArray);
-    // free(rgbArray);
-    
-    return androidRgbArray;
+        return AWT_FRAME_NONE;
+    }
+
+    // Copy the JRE RGB array straight into the Android frame buffer, without any intermediate array.
+    // This thread never returns to the JRE, so the local reference has to be freed by hand.
+    jint result = AWT_FRAME_NONE;
+    jsize arrayLength = (*runtimeJNIEnvPtr_GRAPHICS)->GetArrayLength(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray);
+    uint32_t* destination = (*env)->GetDirectBufferAddress(env, frameBuffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, frameBuffer);
+    if (destination != NULL && capacity >= (jlong) arrayLength * 4) {
+        uint32_t* rgbArray = (*runtimeJNIEnvPtr_GRAPHICS)->GetPrimitiveArrayCritical(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray, NULL);
+        if (rgbArray != NULL) {
+            uint32_t frameHash = hashFrame(rgbArray, arrayLength);
+            if (forceUpdate || frameHash != lastFrameHash) {
+                copyFrame(destination, rgbArray, arrayLength);
+                lastFrameHash = frameHash;
+                result = AWT_FRAME_UPDATED;
+            } else {
+                result = AWT_FRAME_UNCHANGED;
+            }
+            (*runtimeJNIEnvPtr_GRAPHICS)->ReleasePrimitiveArrayCritical(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray, rgbArray, JNI_ABORT);
+        }
+    }
+    (*runtimeJNIEnvPtr_GRAPHICS)->DeleteLocalRef(runtimeJNIEnvPtr_GRAPHICS, jreRgbArray);
+    return result;
 }
 
 JNIEXPORT void JNICALL Java_net_java_openjdk_cacio_ctc_CTCClipboard_nQuerySystemClipboard(JNIEnv *env, jclass clazz) {
@@ -18,6 +18,9 @@
 #include <string.h>
 #include <stdatomic.h>
 #include <math.h>
+#include <pthread.h>
+#include <time.h>
+#include <errno.h>
 
 #define TAG __FILE_NAME__
 #include "log.h"
@@ -43,6 +46,31 @@ do {                                                                       \
 
 static void registerFunctions(JNIEnv *env);
 
+// Used to let glfwWaitEvents(Timeout) sleep until some input arrives
+static pthread_mutex_t event_wait_mutex = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t event_wait_cond; // Initialized by initEventWaitCond()
+static pthread_once_t event_wait_cond_once = PTHREAD_ONCE_INIT;
+static unsigned long event_generation; // Incremented for every incoming event
+static unsigned long pumped_event_generation; // The event generation at the last pump
+
+/** Make the event condition measure its timeouts on the monotonic clock, so that changing the wall clock doesn't affect them */
+static void initEventWaitCond() {
+    pthread_condattr_t cond_attr;
+    pthread_condattr_init(&cond_attr);
+    pthread_condattr_setclock(&cond_attr, CLOCK_MONOTONIC);
+    pthread_cond_init(&event_wait_cond, &cond_attr);
+    pthread_condattr_destroy(&cond_attr);
+}
+
+/** Wake up the threads that wait for events, if any */
+static void notifyEventArrived() {
+    pthread_once(&event_wait_cond_once, initEventWaitCond);
+    pthread_mutex_lock(&event_wait_mutex);
+    event_generation++;
+    pthread_cond_broadcast(&event_wait_cond);
+    pthread_mutex_unlock(&event_wait_mutex);
+}
+
 jint JNI_OnLoad(JavaVM* vm, __attribute__((unused)) void* reserved) {
     if (pojav_environ->dalvikJavaVMPtr == NULL) {
         LOGI("Saving DVM environ...");
@@ -152,6 +180,11 @@ void pojavPumpEvents(void* window) {
 
 /** Prepare the library for sending out callbacks to all windows */
 void pojavStartPumping() {
+    // Everything that arrived up to this point is going to be pumped out now
+    pthread_mutex_lock(&event_wait_mutex);
+    pumped_event_generation = event_generation;
+    pthread_mutex_unlock(&event_wait_mutex);
+
     size_t counter = atomic_load_explicit(&pojav_environ->eventCounter, memory_order_acquire);
     size_t index = pojav_environ->outEventIndex;
 
@@ -312,6 +345,7 @@ jboolean critical_send_char(jchar codepoint) {
         } else {
             pojav_environ->GLFW_invoke_Char((void*) pojav_environ->showingWindow, (unsigned int) codepoint);
         }
+        notifyEventArrived();
         return JNI_TRUE;
     }
     return JNI_FALSE;
@@ -328,6 +362,7 @@ jboolean critical_send_char_mods(jchar codepoint, jint mods) {
         } else {
             pojav_environ->GLFW_invoke_CharMods((void*) pojav_environ->showingWindow, codepoint, mods);
         }
+        notifyEventArrived();
         return JNI_TRUE;
     }
     return JNI_FALSE;
@@ -373,6 +408,7 @@ void critical_send_cursor_pos(jfloat x, jfloat y) {
             pojav_environ->cursorX = x;
             pojav_environ->cursorY = y;
         }
+        notifyEventArrived();
     }
 }
 
@@ -391,6 +427,7 @@ void critical_send_key(jint key, jint scancode, jint action, jint mods) {
         } else {
             pojav_environ->GLFW_invoke_Key((void*) pojav_environ->showingWindow, key, scancode, action, mods);
         }
+        notifyEventArrived();
     }
 }
 void noncritical_send_key(__attribute__((unused)) JNIEnv* env, __attribute__((unused)) jclass clazz, jint key, jint scancode, jint action, jint mods) {
@@ -405,6 +442,7 @@ void critical_send_mouse_button(jint button, jint action, jint mods) {
         } else {
             pojav_environ->GLFW_invoke_MouseButton((void*) pojav_environ->showingWindow, button, action, mods);
         }
+        notifyEventArrived();
     }
 }
 
@@ -424,6 +462,7 @@ void critical_send_screen_size(jint width, jint height) {
     // This is done to ensure that we have predictable conditions to correctly call
     // updateMonitorSize() and updateWindowSize() while on the render thread with an attached
     // JNIEnv.
+    notifyEventArrived();
 }
 
 void noncritical_send_screen_size(__attribute__((unused)) JNIEnv* env, __attribute__((unused)) jclass clazz, jint width, jint height) {
@@ -437,6 +476,7 @@ void critical_send_scroll(jdouble xoffset, jdouble yoffset) {
         } else {
             pojav_environ->GLFW_invoke_Scroll((void*) pojav_environ->showingWindow, (double) xoffset, (double) yoffset);
         }
+        notifyEventArrived();
     }
 }
 
@@ -445,6 +485,37 @@ void noncritical_send_scroll(__attribute__((unused)) JNIEnv* env, __attribute__(
 }
 
 
+/**
+ * Wait until an event arrives after the last pump, or until the timeout elapses.
+ * A negative timeout means waiting without a time limit.
+ */
+JNIEXPORT void JNICALL Java_org_lwjgl_glfw_GLFW_nglfwWaitEvents(__attribute__((unused)) JNIEnv* env, __attribute__((unused)) jclass clazz, jlong timeoutNanos) {
+    struct timespec deadline;
+    pthread_once(&event_wait_cond_once, initEventWaitCond);
+    if(timeoutNanos >= 0) {
+        clock_gettime(CLOCK_MONOTONIC, &deadline);
+        deadline.tv_sec += (time_t) (timeoutNanos / 1000000000);
+        deadline.tv_nsec += (long) (timeoutNanos % 1000000000);
+        if(deadline.tv_nsec >= 1000000000) {
+            deadline.tv_sec++;
+            deadline.tv_nsec -= 1000000000;
+        }
+    }
+    pthread_mutex_lock(&event_wait_mutex);
+    while(event_generation == pumped_event_generation) {
+        if(timeoutNanos < 0) {
+            pthread_cond_wait(&event_wait_cond, &event_wait_mutex);
+        } else if(pthread_cond_timedwait(&event_wait_cond, &event_wait_mutex, &deadline) == ETIMEDOUT) {
+            break;
+        }
+    }
+    pthread_mutex_unlock(&event_wait_mutex);
+}
+
+JNIEXPORT void JNICALL Java_org_lwjgl_glfw_GLFW_glfwPostEmptyEvent(__attribute__((unused)) JNIEnv* env, __attribute__((unused)) jclass clazz) {
+    notifyEventArrived();
+}
+
 JNIEXPORT void JNICALL Java_org_lwjgl_glfw_GLFW_nglfwSetShowingWindow(__attribute__((unused)) JNIEnv* env, __attribute__((unused)) jclass clazz, jlong window) {
     pojav_environ->showingWindow = (jlong) window;
 }
@@ -505,9 +505,9 @@ public class GLFW
     private static GLFWVidMode mGLFWVideoMode;
     private static long mGLFWWindowMonitor;
 
-    private static double mGLFWInitialTime;
+    private static long mGLFWInitialTime;
 
-    private static ArrayMap<Long, GLFWWindowProperties> mGLFWWindowMap;
+    private static GLFWWindowTable mGLFWWindowMap;
     public static boolean mGLFWIsInputReady;
     private static boolean mGLFWInputPumping;
     private static boolean mGLFWWindowVisibleOnCreation = true;
@@ -528,7 +528,7 @@ public class GLFW
         mGLFWErrorCallback = GLFWErrorCallback.createPrint();
         mGLFWKeyCodes = new ArrayMap<>();
 
-        mGLFWWindowMap = new ArrayMap<>();
+        mGLFWWindowMap = new GLFWWindowTable();
 
         mGLFWVideoMode = new GLFWVidMode(ByteBuffer.allocateDirect(GLFWVidMode.SIZEOF));
         memPutInt(mGLFWVideoMode.address() + mGLFWVideoMode.WIDTH, mGLFWWindowWidth);
@@ -578,6 +578,7 @@ public class GLFW
     private static native long nglfwSetScrollCallback(long window, long ptr);
     // private static native void nglfwSetInputReady();
     private static native void nglfwSetShowingWindow(long window);
+    private static native void nglfwWaitEvents(long timeoutNanos);
 
     /*
      private static void priGlfwSetError(int error) {
@@ -807,7 +808,7 @@ public class GLFW
     public static boolean glfwInit() {
         if (!isGLFWReady) {
             //CallbackBridge.nativeAttachThreadToOther(false, false);
-            mGLFWInitialTime = (double) System.nanoTime();
+            mGLFWInitialTime = System.nanoTime();
             long __functionAddress = Functions.Init;
             isGLFWReady = invokeI(__functionAddress) != 0;
             gamepadDataPointer = internalGetGamepadDataPointer();
@@ -895,11 +896,11 @@ public class GLFW
     }
 
     public static int glfwGetWindowAttrib(@NativeType("GLFWwindow *") long window, int attrib) {
-        return internalGetWindow(window).windowAttribs.getOrDefault(attrib, 0);
+        return internalGetWindow(window).windowAttribs.get(attrib, 0);
     }
 
     public static void glfwSetWindowAttrib(@NativeType("GLFWwindow *") long window, int attrib, int value) {
-        internalGetWindow(window).windowAttribs.put(attrib, value);
+        internalGetWindow(window).windowAttribs.set(attrib, value);
     }
 
     public static void glfwGetVersion(IntBuffer major, IntBuffer minor, IntBuffer rev) {
@@ -965,21 +966,20 @@ public class GLFW
     // private static double mTime = 0d;
     public static double glfwGetTime() {
         // Boardwalk: just use system timer
-        // System.out.println("glfwGetTime");
         return (System.nanoTime() - mGLFWInitialTime) / 1.e9;
     }
 
     public static void glfwSetTime(double time) {
-        mGLFWInitialTime = System.nanoTime() - (long) time;
+        mGLFWInitialTime = System.nanoTime() - (long) (time * 1.e9);
     }
 
     public static long glfwGetTimerValue() {
-        return System.currentTimeMillis();
+        // The timer runs on the monotonic clock, in nanoseconds
+        return System.nanoTime();
     }
 
     public static long glfwGetTimerFrequency() {
-        // FIXME set correct value!!
-        return 60;
+        return 1000000000L;
     }
 
     // GLFW Window functions
@@ -1020,7 +1020,7 @@ public class GLFW
             System.out.println("GLFW: Warning: failed to remove window " + window);
             e.printStackTrace();
         }
-        nglfwSetShowingWindow(mGLFWWindowMap.size() == 0 ? 0 : mGLFWWindowMap.keyAt(mGLFWWindowMap.size() - 1));
+        nglfwSetShowingWindow(mGLFWWindowMap.size() == 0 ? 0 : mGLFWWindowMap.pointerAt(mGLFWWindowMap.size() - 1));
     }
 
     public static void glfwDefaultWindowHints() {
@@ -1049,15 +1049,15 @@ public class GLFW
 
     public static void glfwShowWindow(long window) {
         GLFWWindowProperties win = internalGetWindow(window);
-        win.windowAttribs.put(GLFW_HOVERED, 1);
-        win.windowAttribs.put(GLFW_VISIBLE, 1);
+        win.windowAttribs.set(GLFW_HOVERED, 1);
+        win.windowAttribs.set(GLFW_VISIBLE, 1);
         nglfwSetShowingWindow(window);
     }
 
     public static void glfwHideWindow(long window) {
         GLFWWindowProperties win = internalGetWindow(window);
-        win.windowAttribs.put(GLFW_HOVERED, 0);
-        win.windowAttribs.put(GLFW_VISIBLE, 0);
+        win.windowAttribs.set(GLFW_HOVERED, 0);
+        win.windowAttribs.set(GLFW_VISIBLE, 0);
     }
 
     public static void glfwWindowHint(int hint, int value) {
@@ -1101,7 +1101,7 @@ public class GLFW
         if(mGLFWInputPumping) return;
         mGLFWInputPumping = true;
         callV(Functions.StartPumping);
-        for (Long ptr : mGLFWWindowMap.keySet()) callJV(ptr, Functions.PumpEvents);
+        for (int i = 0; i < mGLFWWindowMap.size(); i++) callJV(mGLFWWindowMap.pointerAt(i), Functions.PumpEvents);
         callV(Functions.StopPumping);
         mGLFWInputPumping = false;
     }
@@ -1116,25 +1116,24 @@ public class GLFW
         }
     }
 
-    public static void glfwWaitEvents() {}
+    public static void glfwWaitEvents() {
+        // Waiting from inside of a callback would block the events that we are waiting for
+        if(!mGLFWInputPumping) nglfwWaitEvents(-1);
+        glfwPollEvents();
+    }
 
     public static void glfwWaitEventsTimeout(double timeout) {
-        // Boardwalk: this isn't how you do a frame limiter, but oh well
-        // System.out.println("Frame limiter");
-    /*
-        try {
-            Thread.sleep((long)(timeout * 1000));
-        } catch (InterruptedException ie) {
+        if(!mGLFWInputPumping && timeout > 0) {
+            // Clamp to avoid overflowing the nanosecond timeout
+            nglfwWaitEvents((long) (Math.min(timeout, Long.MAX_VALUE / 1.e9) * 1.e9));
         }
-    */
-        // System.out.println("Out of the frame limiter");
-
+        glfwPollEvents();
     }
 
-    public static void glfwPostEmptyEvent() {}
+    public static native void glfwPostEmptyEvent();
 
     public static int glfwGetInputMode(@NativeType("GLFWwindow *") long window, int mode) {
-        return internalGetWindow(window).inputModes.get(mode);
+        return internalGetWindow(window).inputModes.get(mode, mode == GLFW_CURSOR ? GLFW_CURSOR_NORMAL : 0);
     }
 
     public static void glfwSetInputMode(@NativeType("GLFWwindow *") long window, int mode, int value) {
@@ -1147,7 +1146,7 @@ public class GLFW
             }
         }
 
-        internalGetWindow(window).inputModes.put(mode, value);
+        internalGetWindow(window).inputModes.set(mode, value);
     }
     public static String glfwGetKeyName(int key, int scancode) {
         // TODO keyname list from GLFW
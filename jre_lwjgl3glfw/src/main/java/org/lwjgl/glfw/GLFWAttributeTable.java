@@ -0,0 +1,49 @@
+package org.lwjgl.glfw;
+
+/**
+ * Storage for integer GLFW attributes (window attributes, input modes...) without boxing.
+ * GLFW groups its constants in blocks of the form 0xBBNNN, where BB is the block and NNN
+ * is a small index inside of it. Each block that gets used is stored as a dense int array.
+ * Attributes that don't fit this scheme are ignored.
+ */
+public class GLFWAttributeTable {
+    private static final int BLOCK_SHIFT = 12;
+    private static final int BLOCK_COUNT = 64;
+    private static final int BLOCK_SIZE = 32;
+
+    private final int[][] mBlocks = new int[BLOCK_COUNT][];
+    /* One bit per attribute, telling whether it was set */
+    private final int[] mSetMasks = new int[BLOCK_COUNT];
+
+    /**
+     * Get the value of an attribute.
+     * @param attribute the GLFW attribute
+     * @param defaultValue the value to return if the attribute was never set
+     * @return the value of the attribute
+     */
+    public int get(int attribute, int defaultValue) {
+        int block = attribute >>> BLOCK_SHIFT;
+        int index = attribute & ((1 << BLOCK_SHIFT) - 1);
+        if(block >= BLOCK_COUNT || index >= BLOCK_SIZE) return defaultValue;
+        if((mSetMasks[block] & (1 << index)) == 0) return defaultValue;
+        return mBlocks[block][index];
+    }
+
+    /**
+     * Set the value of an attribute.
+     * @param attribute the GLFW attribute
+     * @param value the new value
+     */
+    public void set(int attribute, int value) {
+        int block = attribute >>> BLOCK_SHIFT;
+        int index = attribute & ((1 << BLOCK_SHIFT) - 1);
+        if(block >= BLOCK_COUNT || index >= BLOCK_SIZE) {
+            System.out.println("GLFW: Warning: unsupported attribute " + Integer.toHexString(attribute));
+            return;
+        }
+        int[] values = mBlocks[block];
+        if(values == null) values = mBlocks[block] = new int[BLOCK_SIZE];
+        values[index] = value;
+        mSetMasks[block] |= 1 << index;
+    }
+}
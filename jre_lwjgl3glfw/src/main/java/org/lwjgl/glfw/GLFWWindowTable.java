@@ -0,0 +1,76 @@
+package org.lwjgl.glfw;
+
+import java.util.Arrays;
+
+/**
+ * A table of windows keyed by their pointers, without boxing the pointers.
+ * Games almost always have a single window, so the last looked up window is remembered
+ * and returned without searching.
+ * Windows are kept in creation order.
+ */
+public class GLFWWindowTable {
+    private long[] mPointers = new long[2];
+    private GLFWWindowProperties[] mWindows = new GLFWWindowProperties[2];
+    private int mSize;
+    private long mLastPointer;
+    private GLFWWindowProperties mLastWindow;
+
+    /**
+     * Get the properties of a window.
+     * @param pointer the window pointer
+     * @return the properties, or null if there is no such window
+     */
+    public GLFWWindowProperties get(long pointer) {
+        GLFWWindowProperties lastWindow = mLastWindow;
+        if(lastWindow != null && mLastPointer == pointer) return lastWindow;
+        int index = indexOf(pointer);
+        if(index == -1) return null;
+        mLastPointer = pointer;
+        mLastWindow = mWindows[index];
+        return mWindows[index];
+    }
+
+    public void put(long pointer, GLFWWindowProperties window) {
+        int index = indexOf(pointer);
+        if(index == -1) {
+            if(mSize == mPointers.length) {
+                mPointers = Arrays.copyOf(mPointers, mSize * 2);
+                mWindows = Arrays.copyOf(mWindows, mSize * 2);
+            }
+            index = mSize++;
+        }
+        mPointers[index] = pointer;
+        mWindows[index] = window;
+        mLastPointer = pointer;
+        mLastWindow = window;
+    }
+
+    public void remove(long pointer) {
+        int index = indexOf(pointer);
+        if(index == -1) return;
+        System.arraycopy(mPointers, index + 1, mPointers, index, mSize - index - 1);
+        System.arraycopy(mWindows, index + 1, mWindows, index, mSize - index - 1);
+        mSize--;
+        mWindows[mSize] = null;
+        if(mLastPointer == pointer) mLastWindow = null;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param index the index of the window, in creation order
+     * @return the pointer of the window
+     */
+    public long pointerAt(int index) {
+        return mPointers[index];
+    }
+
+    private int indexOf(long pointer) {
+        for(int i = 0; i < mSize; i++) {
+            if(mPointers[i] == pointer) return i;
+        }
+        return -1;
+    }
+}
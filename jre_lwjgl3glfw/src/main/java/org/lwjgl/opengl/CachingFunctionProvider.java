@@ -0,0 +1,70 @@
+package org.lwjgl.opengl;
+
+import org.lwjgl.system.FunctionProvider;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * FunctionProvider that remembers the addresses resolved from a renderer library, so that
+ * creating another GLCapabilities for the same renderer doesn't have to look up every GL
+ * function again. Addresses are resolved lazily, on the first lookup of each function.
+ * The cache of a renderer is dropped if the library appears to have been reloaded.
+ */
+public class CachingFunctionProvider implements FunctionProvider {
+    /* Function resolved on every creation to check that the cached addresses are still valid */
+    static final String CANARY_FUNCTION = "glGetString";
+    private static final HashMap<String, HashMap<String, Long>> sRendererCaches = new HashMap<>();
+
+    private final FunctionProvider mProvider;
+    private final HashMap<String, Long> mAddresses;
+
+    private CachingFunctionProvider(FunctionProvider provider, HashMap<String, Long> addresses) {
+        mProvider = provider;
+        mAddresses = addresses;
+    }
+
+    /**
+     * Wrap a FunctionProvider with the address cache of its renderer.
+     * @param provider the FunctionProvider of the renderer library
+     * @param rendererName the name of the renderer library, or null if unknown
+     * @return a caching FunctionProvider, or the original provider if the renderer is unknown
+     */
+    public static FunctionProvider wrap(FunctionProvider provider, String rendererName) {
+        if(rendererName == null || rendererName.isEmpty()) return provider;
+        synchronized (sRendererCaches) {
+            HashMap<String, Long> addresses = sRendererCaches.get(rendererName);
+            if(addresses == null) {
+                addresses = new HashMap<>(2048);
+                sRendererCaches.put(rendererName, addresses);
+            }else{
+                Long cachedCanary = addresses.get(CANARY_FUNCTION);
+                if(cachedCanary != null && cachedCanary != provider.getFunctionAddress(CANARY_FUNCTION)) {
+                    System.out.println("CachingFunctionProvider: " + rendererName + " was reloaded, dropping cached addresses");
+                    addresses.clear();
+                }
+            }
+            return new CachingFunctionProvider(provider, addresses);
+        }
+    }
+
+    @Override
+    public long getFunctionAddress(CharSequence functionName) {
+        String name = functionName.toString();
+        synchronized (sRendererCaches) {
+            Long address = mAddresses.get(name);
+            if(address != null) return address;
+        }
+        long address = mProvider.getFunctionAddress(name);
+        synchronized (sRendererCaches) {
+            mAddresses.put(name, address);
+        }
+        return address;
+    }
+
+    @Override
+    public long getFunctionAddress(ByteBuffer functionName) {
+        // Only used with pre-encoded names, which GLCapabilities doesn't do
+        return mProvider.getFunctionAddress(functionName);
+    }
+}
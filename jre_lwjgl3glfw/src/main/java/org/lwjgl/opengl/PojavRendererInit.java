@@ -11,8 +11,18 @@ import javax.annotation.Nullable;
  * GL symbols.
  * */
 public class PojavRendererInit {
+    /* The renderer that was already initialized, initialization only needs to happen once per renderer */
+    private static String sInitializedRenderer;
+    /* Address of the canary function in the initialized renderer, it changes if the library gets reloaded */
+    private static long sInitializedCanaryAddress;
 
-    public static void onCreateCapabilities(FunctionProvider functionProvider) {
+    /**
+     * Initialize the renderer-specific callbacks, if they weren't initialized for this renderer yet,
+     * or if the renderer library was reloaded since.
+     * @param functionProvider the FunctionProvider of the renderer library
+     * @return the FunctionProvider to use for loading GL symbols, which caches the resolved addresses
+     */
+    public static synchronized FunctionProvider onCreateCapabilities(FunctionProvider functionProvider) {
         String rendererName = null;
         if(functionProvider instanceof SharedLibrary) {
             SharedLibrary rendererLibrary = (SharedLibrary) functionProvider;
@@ -24,11 +34,18 @@ public class PojavRendererInit {
         if(!isValidString(rendererName)) {
             System.out.println("PojavRendererInit: Failed to find Pojav renderer name! " +
                                 "Renderer-specific initialization may not work properly");
+            return functionProvider;
         }
-        // NOTE: hardcoded gl4es libname
-        if(rendererName.endsWith("libgl4es_114.so")) {
-            nativeInitGl4esInternals(functionProvider);
+        long canaryAddress = functionProvider.getFunctionAddress(CachingFunctionProvider.CANARY_FUNCTION);
+        if(!rendererName.equals(sInitializedRenderer) || canaryAddress != sInitializedCanaryAddress) {
+            // NOTE: hardcoded gl4es libname
+            if(rendererName.endsWith("libgl4es_114.so")) {
+                nativeInitGl4esInternals(functionProvider);
+            }
+            sInitializedRenderer = rendererName;
+            sInitializedCanaryAddress = canaryAddress;
         }
+        return CachingFunctionProvider.wrap(functionProvider, rendererName);
     }
 
     private static boolean isValidString(@Nullable  String s) {